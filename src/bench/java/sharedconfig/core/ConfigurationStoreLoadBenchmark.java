@@ -0,0 +1,73 @@
+package sharedconfig.core;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Загрузка и обновление хранилища: холодная загрузка, обновление без изменений и обновление одного changeset'а
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.xml")
+public class ConfigurationStoreLoadBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int variables;
+
+    @Param({"1", "10", "100"})
+    public int changesets;
+
+    private SyntheticStore syntheticStore;
+    private ConfigurationStore store;
+    private int updateNumber = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        syntheticStore = SyntheticStore.create("load-bench", variables, changesets);
+        store = syntheticStore.buildStore();
+        store.refresh();
+
+        // обновление changeset'а должно публиковать новую версию, иначе incrementalRefresh измеряет только разбор prepared.xml
+        var version = store.getVersion();
+        syntheticStore.updateChangeset(changesets, "setup");
+        store.refresh();
+        if (store.getVersion() <= version)
+            throw new IllegalStateException("Changeset update wasn't applied by the store");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        syntheticStore.close();
+    }
+
+    @Benchmark
+    public ConfigurationStore coldLoad() throws Exception {
+        var coldStore = syntheticStore.buildStore();
+        coldStore.refresh();
+        return coldStore;
+    }
+
+    @Benchmark
+    public long noOpRefresh() {
+        store.refresh();
+        return store.getVersion();
+    }
+
+    @State(Scope.Thread)
+    public static class ChangedChangeset {
+        @Setup(Level.Invocation)
+        public void publish(ConfigurationStoreLoadBenchmark benchmark) throws Exception {
+            // последний changeset получает новые значения, остальные не изменяются
+            benchmark.syntheticStore.updateChangeset(benchmark.changesets, ++benchmark.updateNumber % 2 == 0 ? "even" : "odd");
+        }
+    }
+
+    @Benchmark
+    public long incrementalRefresh(ChangedChangeset changedChangeset) {
+        store.refresh();
+        return store.getVersion();
+    }
+}
@@ -0,0 +1,76 @@
+package sharedconfig.core;
+
+import org.openjdk.jmh.annotations.*;
+import sharedconfig.core.exceptions.StoreNotLoadedException;
+import sharedconfig.core.interfaces.IConfigurationVersionSnapshot;
+import sharedconfig.core.interfaces.IObservableConfigurationService;
+import sharedconfig.utils.tuples.StrictNameVersionTuple;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Чтение снимков конфигурации: построение снимка скоупа и попадание в кэш декоратора в один и несколько потоков
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=log4j2-bench.xml")
+public class ScopedSnapshotReadBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int variables;
+
+    @Param({"1", "10", "100"})
+    public int changesets;
+
+    private SyntheticStore syntheticStore;
+    private ConfigurationEngine engine;
+    private IObservableConfigurationService<IConfigurationVersionSnapshot> applicationService;
+    private IObservableConfigurationService<IConfigurationVersionSnapshot> blockService;
+    private IObservableConfigurationService<IConfigurationVersionSnapshot> cachedApplicationService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        syntheticStore = SyntheticStore.create("read-bench", variables, changesets);
+        engine = ConfigurationEngine.create(syntheticStore.getSettings(), null);
+        if (!engine.waitStore(60_000))
+            throw new IllegalStateException("Store wasn't loaded");
+        while (!Long.valueOf(changesets).equals(engine.getApplicationConfigurationService().getLastVersion().getVersionId())) {
+            Thread.sleep(50);
+        }
+
+        var settings = syntheticStore.getSettings();
+        applicationService = new ApplicationScopedConfigurationService<>(engine, new StrictNameVersionTuple(settings.getName(), settings.getVersion()), a -> a);
+        blockService = new BlockScopedConfigurationService<>(engine, SyntheticStore.blockName(0), null, a -> a);
+        cachedApplicationService = engine.getApplicationConfigurationService();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        engine.close();
+        syntheticStore.close();
+    }
+
+    @Benchmark
+    public IConfigurationVersionSnapshot applicationSnapshot() throws StoreNotLoadedException {
+        return applicationService.getLastVersion();
+    }
+
+    @Benchmark
+    public IConfigurationVersionSnapshot blockSnapshot() throws StoreNotLoadedException {
+        return blockService.getLastVersion();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public IConfigurationVersionSnapshot cachedSnapshotSingleThread() throws StoreNotLoadedException {
+        return cachedApplicationService.getLastVersion();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public IConfigurationVersionSnapshot cachedSnapshotMultiThread() throws StoreNotLoadedException {
+        return cachedApplicationService.getLastVersion();
+    }
+}
@@ -0,0 +1,161 @@
+package sharedconfig.core;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Синтетическое хранилище для бенчмарков: публикует application.inv.xml, prepared.xml и prepared.vars.xml
+ * так же, как это делает агент конфигурации
+ */
+/* package */ class SyntheticStore implements AutoCloseable {
+    /** количество блоков, между которыми распределяется каждая десятая переменная */
+    private static final int BLOCKS = 10;
+
+    @Getter private final @NotNull Path root;
+    @Getter private final @NotNull ApplicationSettings settings;
+    @Getter private final @NotNull Path baseDirectory;
+    @Getter private final @NotNull Path storeDirectory;
+    @Getter private final int variables;
+    @Getter private final int changesets;
+    /** номер публикации prepared.xml, изменяется для того чтобы хранилище увидело изменения */
+    private int preparedRevision = 0;
+    /** атрибут source элементов prepared.xml, ключ - id changeset'а */
+    private final Map<Long, String> sources = new HashMap<>();
+
+    private SyntheticStore(@NotNull Path root, @NotNull ApplicationSettings settings, @NotNull Path baseDirectory,
+                           @NotNull Path storeDirectory, int variables, int changesets) {
+        this.root = root;
+        this.settings = settings;
+        this.baseDirectory = baseDirectory;
+        this.storeDirectory = storeDirectory;
+        this.variables = variables;
+        this.changesets = changesets;
+    }
+
+    /**
+     * Создать хранилище с указанным количеством переменных и changeset'ов, каждый changeset содержит значения всех переменных
+     */
+    public static @NotNull SyntheticStore create(@NotNull String name, int variables, int changesets) throws Exception {
+        var root = Files.createTempDirectory("sharedconfig-bench");
+        var agentDirectory = Files.createDirectories(root.resolve("agent")).toAbsolutePath();
+        var baseDirectory = Files.createDirectories(root.resolve("application")).toAbsolutePath();
+        var storageDirectory = Files.createDirectories(root.resolve("storage")).toAbsolutePath();
+        Files.writeString(baseDirectory.resolve(".mount-configuration"), agentDirectory.toString(), StandardCharsets.UTF_8);
+        Files.writeString(baseDirectory.resolve("app-declaration.xml"),
+                "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<configuration format=\"1.0.0\"><application name=\"app\" version=\"1.0.0\" format=\"1.0.0\"/></configuration>",
+                StandardCharsets.UTF_8);
+
+        var settings = ApplicationSettings.create(baseDirectory.toString(), "app-declaration.xml", storageDirectory.toString(), name, "1.0.0");
+        var context = ApplicationContext.create(null, settings, baseDirectory.toFile());
+        var store = new SyntheticStore(root, settings, baseDirectory, context.getStorageDirectoryInfo().toPath(), variables, changesets);
+
+        store.writeInventory();
+        for (int id = 1; id <= changesets; ++id) {
+            store.writeChangeset(id, "value");
+        }
+        store.publishPreparedXml();
+        return store;
+    }
+
+    /**
+     * Построить контроллер хранилища так же, как это делает движок
+     */
+    public @NotNull ConfigurationStore buildStore() throws Exception {
+        var context = ApplicationContext.create(null, settings, baseDirectory.toFile());
+        return ConfigurationStore.builder().tryBuild(context).getRightOrThrow();
+    }
+
+    /**
+     * Переписать значения переменных changeset'а и опубликовать prepared.xml заново.
+     * Атрибут source элемента changeset'а получает значение valuePrefix, поэтому хранилище видит измененный элемент
+     */
+    public void updateChangeset(long id, @NotNull String valuePrefix) throws IOException {
+        writeChangeset(id, valuePrefix);
+        sources.put(id, valuePrefix);
+        publishPreparedXml();
+    }
+
+    public static @NotNull String variableName(int index) {
+        return "var" + index;
+    }
+
+    public static @NotNull String blockName(int index) {
+        return "block" + index;
+    }
+
+    private static boolean isBlockVariable(int index) {
+        return index % 10 == 0;
+    }
+
+    private static @NotNull String hashOf(@NotNull String variable) {
+        return Integer.toHexString(variable.hashCode());
+    }
+
+    private void writeInventory() throws IOException {
+        try (var writer = Files.newBufferedWriter(storeDirectory.resolve("application.inv.xml"), StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<inventory>\n<application name=\"app\" version=\"1.0.0\">\n");
+            for (int block = 0; block < BLOCKS; ++block) {
+                writer.write("<block name=\"" + blockName(block) + "\" version=\"1.0.0\"><variables>\n");
+                for (int i = block * 10; i < variables; i += BLOCKS * 10) {
+                    writeDeclaration(writer, variableName(i));
+                }
+                writer.write("</variables></block>\n");
+            }
+            writer.write("<variables>\n");
+            for (int i = 0; i < variables; ++i) {
+                if (!isBlockVariable(i))
+                    writeDeclaration(writer, variableName(i));
+            }
+            writer.write("</variables>\n</application>\n</inventory>");
+        }
+    }
+
+    private static void writeDeclaration(@NotNull BufferedWriter writer, @NotNull String variable) throws IOException {
+        writer.write("<var name=\"" + variable + "\" hk=\"" + hashOf(variable) + "\">default</var>\n");
+    }
+
+    private void writeChangeset(long id, @NotNull String valuePrefix) throws IOException {
+        var changesetDirectory = Files.createDirectories(storeDirectory.resolve("cs" + id));
+        var tmp = changesetDirectory.resolve("prepared.vars.xml.tmp");
+        try (var writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<variables format=\"1.0\">\n");
+            for (int i = 0; i < variables; ++i) {
+                var variable = variableName(i);
+                writer.write("<var name=\"" + variable + "\" hk=\"" + hashOf(variable) + "\">" + valuePrefix + "-" + id + "-" + i + "</var>\n");
+            }
+            writer.write("</variables>");
+        }
+        Files.move(tmp, changesetDirectory.resolve("prepared.vars.xml"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void publishPreparedXml() throws IOException {
+        ++preparedRevision;
+        var tmp = storeDirectory.resolve("prepared.xml.tmp");
+        try (var writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<changes format=\"1.0.0\" zit=\"1\" zv=\"" + preparedRevision + "\">\n");
+            for (int id = 1; id <= changesets; ++id) {
+                writer.write("<item id=\"" + id + "\" status=\"Success\" source=\"" + sources.getOrDefault((long) id, "bench") + "\" directory=\"cs" + id + "\" templateDirectory=\"cs" + id + "\"/>\n");
+            }
+            writer.write("</changes>");
+        }
+        Files.move(tmp, storeDirectory.resolve("prepared.xml"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -12,19 +12,29 @@ import sharedconfig.helpers.HashHelper;
 import sharedconfig.helpers.StringHelper;
 import sharedconfig.helpers.XmlHelper;
 import sharedconfig.utils.Either;
+import sharedconfig.utils.FileFingerprint;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Optional;
 
 @Getter
 /* package */ class ApplicationContext {
+    /** интервал, с которым контекст проверяется полностью, даже если отпечатки файлов не изменились */
+    private static final long FULL_VALIDATION_INTERVAL_MILLIS = 10_000;
+
+    private final ApplicationSettings settings;
     private final String name;
     private final String version;
     private final File baseDirectoryInfo;
@@ -42,10 +52,24 @@ import java.util.Optional;
     private final long decFileWrite;
     private final long decFileLength;
 
+    /** ключ декларации, из которой построен контекст, и хэш итогового документа декларации */
+    private final String declarationKey;
+    private final String declarationHash;
+
+    /** директория, с которой начинался поиск .mount-configuration */
+    private final File agentDiscoveryDirectory;
+    /** найденный файл .mount-configuration и его отпечаток на момент определения директории агента */
+    private Path mountConfigFile;
+    private FileFingerprint mountConfigFingerprint;
+    /** время последней полной проверки контекста */
+    private long lastFullValidationTime;
+
     @SneakyThrows
-    private ApplicationContext(File agentDirectory, String name, String version,
-                               File baseDirectoryInfo, File decFileInfo, File storageDirectoryInfo,
+    private ApplicationContext(ApplicationSettings settings, File agentDiscoveryDirectory, AgentDirectory agentDirectoryInfo,
+                               String declarationKey, String declarationHash, String name, String version, File baseDirectoryInfo, File decFileInfo, File storageDirectoryInfo,
                                File appInfoFileInfo, File refFileInfo) {
+        var agentDirectory = agentDirectoryInfo.directory;
+        this.settings = settings;
         this.name = name;
         this.version = version;
         this.baseDirectoryInfo = baseDirectoryInfo;
@@ -65,11 +89,21 @@ import java.util.Optional;
         this.decFileCreate = decFileInfoAttributes.creationTime().toMillis();
         this.decFileWrite = decFileInfoAttributes.lastModifiedTime().toMillis();
         this.decFileLength = decFileInfoAttributes.size();
+
+        this.declarationKey = declarationKey;
+        this.declarationHash = declarationHash;
+        this.agentDiscoveryDirectory = agentDiscoveryDirectory;
+        this.mountConfigFile = agentDirectoryInfo.mountConfigFile;
+        this.mountConfigFingerprint = agentDirectoryInfo.mountConfigFingerprint;
+        this.lastFullValidationTime = System.currentTimeMillis();
     }
 
     static @NotNull ApplicationContext create(@Nullable ApplicationContext currentDeclaration,
                                               @NotNull ApplicationSettings settings,
                                               @NotNull File agentDiscoveryDirectory) throws Exception {
+        if (currentDeclaration != null && currentDeclaration.isUnchanged(settings, agentDiscoveryDirectory))
+            return currentDeclaration;
+
         var baseDirectory = settings.getBaseDirectory();
         var declarationFile = settings.getDeclarationFile();
         var storageDirectory = settings.getStorageDirectory();
@@ -81,7 +115,8 @@ import java.util.Optional;
         if (storageDirectory == null)
             throw new IllegalArgumentException("Не задан storageDirectory приложения");
 
-        var agentDirectoryInfo = tryDetermineAgentDirectory(agentDiscoveryDirectory).getRightOrThrow();
+        var agentDirectory = tryDetermineAgentDirectory(agentDiscoveryDirectory).getRightOrThrow();
+        var agentDirectoryInfo = agentDirectory.directory;
 
         var isConfigChanged = false;
         // =======================================================================================================================================
@@ -111,12 +146,15 @@ import java.util.Optional;
         // Файл ссылки модифицировали. Его нужно пересоздать.
         if (!isConfigChanged) {
             var curRefFile = currentDeclaration.refFileInfo = new File(currentDeclaration.refFileInfo.getAbsolutePath());
-            var curRefFileAttributes = Files.readAttributes(currentDeclaration.refFileInfo.toPath(), BasicFileAttributes.class);
-
-            if (!curRefFile.exists() || curRefFileAttributes.creationTime().toMillis() != currentDeclaration.refFileCreate ||
-                    curRefFileAttributes.lastModifiedTime().toMillis() != currentDeclaration.refFileWrite ||
-                    curRefFile.length() != currentDeclaration.refFileLength) {
+            if (!curRefFile.exists()) {
                 isConfigChanged = true;
+            } else {
+                var curRefFileAttributes = Files.readAttributes(currentDeclaration.refFileInfo.toPath(), BasicFileAttributes.class);
+                if (curRefFileAttributes.creationTime().toMillis() != currentDeclaration.refFileCreate ||
+                        curRefFileAttributes.lastModifiedTime().toMillis() != currentDeclaration.refFileWrite ||
+                        curRefFile.length() != currentDeclaration.refFileLength) {
+                    isConfigChanged = true;
+                }
             }
         }
 
@@ -140,49 +178,21 @@ import java.util.Optional;
         }
 
         if (!isConfigChanged) {
+            currentDeclaration.mountConfigFile = agentDirectory.mountConfigFile;
+            currentDeclaration.mountConfigFingerprint = agentDirectory.mountConfigFingerprint;
+            currentDeclaration.lastFullValidationTime = System.currentTimeMillis();
             return currentDeclaration;
         }
 
-        var declarationDocumentLoadResult = loadDeclaration(declarationFile);
-        var declarationDocumentLoadError = declarationDocumentLoadResult.tryGetLeft().orElse(null);
-        var declarationDocument = declarationDocumentLoadResult.tryGetRight().orElse(null);
-        if (declarationDocumentLoadError != null) {
-            throw new ApplicationException(String.format("Ошибка загрузки файла декларации приложения: [%s]", declarationFile.getAbsolutePath()), declarationDocumentLoadError);
-        }
-        if (declarationDocument == null || declarationDocument.getDocumentElement() == null) {
-            throw new ApplicationException(String.format("Ошибка загрузки файла декларации приложения: [%s]. Файл не содержит корневого элемента.", declarationFile.getAbsolutePath()));
-        }
-
-        var documentRoot = declarationDocument.getDocumentElement();
-        documentRoot.setAttribute("base-path", baseDirectory.toAbsolutePath().toString());     // базовый путь для инвентаризации
-        documentRoot.setAttribute("store-path", storageDirectory.toAbsolutePath().toString()); // базовый путь где размещается конфигурационная информация
-
-        var appName = settings.getName();
-        var appVersion = settings.getVersion();
-        var applicationElement = XmlHelper.getElementByTagName(documentRoot, "application");
-
-        if (applicationElement != null) {
-            if (!StringHelper.isNullOrWhitespace(appName)) {
-                applicationElement.setAttribute("name", appName);
-            } else {
-                appName = applicationElement.getAttribute("name");
-            }
-
-            if (!StringHelper.isNullOrWhitespace(appVersion)) {
-                applicationElement.setAttribute("version", appVersion);
-            } else {
-                appVersion = applicationElement.getAttribute("version");
-            }
-        }
-
-        // вычисляем хэш
-        val rawDocXml = XmlHelper.toXmlString(declarationDocument);
-        val rawDocXmlHash = HashHelper.getSHA256HashString(rawDocXml)
-                .toLowerCase().substring(0, 10);
+        // декларация с тем же содержимым и теми же настройками дает тот же документ - повторно его не строим
+        var declarationKey = getDeclarationKey(declarationFile, settings);
+        var declaration = currentDeclaration != null && declarationKey.equals(currentDeclaration.declarationKey)
+                ? new PreparedDeclaration(currentDeclaration.name, currentDeclaration.version, currentDeclaration.declarationHash, null)
+                : prepareDeclaration(settings, declarationFile);
+        var appName = declaration.name;
+        var appVersion = declaration.version;
+        var rawDocXmlHash = declaration.hash;
 
-        // prepare appName
-        appName = FileHelper.removeIncorrectPathChars(appName);
-        appName = appName.length() > 256 ? appName.substring(0, 256) : appName;
         var maxDeclareFileNameLength = 256 - appName.length();
 
         var declareFileNameParts = new ArrayList<String>();
@@ -216,6 +226,7 @@ import java.util.Optional;
 
         var appInfoFileName = FileHelper.combinePaths(destinationDirectory.getAbsolutePath(), rawDocXmlHash + ".app.xml");
         if (!Files.exists(appInfoFileName)) {
+            var declarationDocument = declaration.document != null ? declaration.document : prepareDeclaration(settings, declarationFile).document;
             XmlHelper.writeToFile(declarationDocument, appInfoFileName);
         }
 
@@ -228,7 +239,115 @@ import java.util.Optional;
 
         var appInfoRefFileInfo = new File(appInfoRefFilePath.toString());
 
-        return new ApplicationContext(agentDirectoryInfo, appName, appVersion, baseDirectory.toFile(), declarationFile, destinationDirectory, appInfoFileInfo, appInfoRefFileInfo);
+        return new ApplicationContext(settings, agentDiscoveryDirectory, agentDirectory, declarationKey, rawDocXmlHash,
+                appName, appVersion, baseDirectory.toFile(), declarationFile, destinationDirectory, appInfoFileInfo, appInfoRefFileInfo);
+    }
+
+    /**
+     * Загрузить декларацию, дополнить ее путями и параметрами приложения и вычислить хэш итогового документа
+     */
+    private static @NotNull PreparedDeclaration prepareDeclaration(@NotNull ApplicationSettings settings, @NotNull File declarationFile) throws Exception {
+        var declarationDocumentLoadResult = loadDeclaration(declarationFile);
+        var declarationDocumentLoadError = declarationDocumentLoadResult.tryGetLeft().orElse(null);
+        var declarationDocument = declarationDocumentLoadResult.tryGetRight().orElse(null);
+        if (declarationDocumentLoadError != null) {
+            throw new ApplicationException(String.format("Ошибка загрузки файла декларации приложения: [%s]", declarationFile.getAbsolutePath()), declarationDocumentLoadError);
+        }
+        if (declarationDocument == null || declarationDocument.getDocumentElement() == null) {
+            throw new ApplicationException(String.format("Ошибка загрузки файла декларации приложения: [%s]. Файл не содержит корневого элемента.", declarationFile.getAbsolutePath()));
+        }
+
+        var documentRoot = declarationDocument.getDocumentElement();
+        documentRoot.setAttribute("base-path", settings.getBaseDirectory().toAbsolutePath().toString());     // базовый путь для инвентаризации
+        documentRoot.setAttribute("store-path", settings.getStorageDirectory().toAbsolutePath().toString()); // базовый путь где размещается конфигурационная информация
+
+        var appName = settings.getName();
+        var appVersion = settings.getVersion();
+        var applicationElement = XmlHelper.getElementByTagName(documentRoot, "application");
+
+        if (applicationElement != null) {
+            if (!StringHelper.isNullOrWhitespace(appName)) {
+                applicationElement.setAttribute("name", appName);
+            } else {
+                appName = applicationElement.getAttribute("name");
+            }
+
+            if (!StringHelper.isNullOrWhitespace(appVersion)) {
+                applicationElement.setAttribute("version", appVersion);
+            } else {
+                appVersion = applicationElement.getAttribute("version");
+            }
+        }
+
+        // вычисляем хэш, документ сериализуется сразу в digest без построения строки
+        val digest = MessageDigest.getInstance("SHA-256");
+        try (val output = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+            XmlHelper.writeTo(declarationDocument, output);
+        }
+        val rawDocXmlHash = HashHelper.toHexString(digest.digest())
+                .toLowerCase().substring(0, 10);
+
+        // prepare appName
+        appName = FileHelper.removeIncorrectPathChars(appName);
+        appName = appName.length() > 256 ? appName.substring(0, 256) : appName;
+
+        return new PreparedDeclaration(appName, appVersion, rawDocXmlHash, declarationDocument);
+    }
+
+    /**
+     * Ключ декларации: хэш содержимого файла декларации и настроек, которыми дополняется документ.
+     * Незаданные имя и версия приложения хэшируются отдельным маркером - в этом случае используются значения из декларации
+     */
+    private static @NotNull String getDeclarationKey(@NotNull File declarationFile, @NotNull ApplicationSettings settings) throws Exception {
+        val digest = MessageDigest.getInstance("SHA-256");
+        try (val input = new DigestInputStream(Files.newInputStream(declarationFile.toPath()), digest)) {
+            input.transferTo(OutputStream.nullOutputStream());
+        }
+        for (val value : new String[] { settings.getBaseDirectory().toAbsolutePath().toString(), settings.getStorageDirectory().toAbsolutePath().toString(),
+                settings.getName(), settings.getVersion() }) {
+            if (value == null) {
+                digest.update((byte) 1);
+                continue;
+            }
+            digest.update((byte) 0);
+            digest.update(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return HashHelper.toHexString(digest.digest());
+    }
+
+    /**
+     * Быстрая проверка контекста: отпечаток .mount-configuration и атрибуты файлов ссылки, декларации и описания приложения
+     * не изменились. Обход директорий и чтение .mount-configuration выполняются только при полной проверке,
+     * которая также выполняется периодически - например, чтобы обнаружить .mount-configuration, появившийся ближе к приложению
+     */
+    private boolean isUnchanged(@NotNull ApplicationSettings settings, @NotNull File agentDiscoveryDirectory) {
+        if (this.settings != settings || !this.agentDiscoveryDirectory.equals(agentDiscoveryDirectory))
+            return false;
+        if (System.currentTimeMillis() - this.lastFullValidationTime >= FULL_VALIDATION_INTERVAL_MILLIS)
+            return false;
+
+        try {
+            var mountConfigFingerprint = FileFingerprint.take(this.mountConfigFile.toFile(), null, false);
+            if (mountConfigFingerprint.isChangedSince(this.mountConfigFingerprint))
+                return false;
+
+            // отсутствующий файл приводит к исключению, отдельная проверка существования не нужна
+            var refFileAttributes = Files.readAttributes(this.refFileInfo.toPath(), BasicFileAttributes.class);
+            if (refFileAttributes.creationTime().toMillis() != this.refFileCreate ||
+                    refFileAttributes.lastModifiedTime().toMillis() != this.refFileWrite ||
+                    refFileAttributes.size() != this.refFileLength)
+                return false;
+
+            var decFileAttributes = Files.readAttributes(this.decFileInfo.toPath(), BasicFileAttributes.class);
+            if (decFileAttributes.creationTime().toMillis() != this.decFileCreate ||
+                    decFileAttributes.lastModifiedTime().toMillis() != this.decFileWrite ||
+                    decFileAttributes.size() != this.decFileLength)
+                return false;
+
+            return Files.readAttributes(this.appInfoFileInfo.toPath(), BasicFileAttributes.class).isRegularFile();
+        } catch (IOException e) {
+            return false;
+        }
     }
 
 
@@ -255,7 +374,7 @@ import java.util.Optional;
      * @param agentDiscoveryDirectory
      * @return
      */
-    private static Either<Exception, File> tryDetermineAgentDirectory(@NotNull File agentDiscoveryDirectory) {
+    private static Either<Exception, AgentDirectory> tryDetermineAgentDirectory(@NotNull File agentDiscoveryDirectory) {
         try {
             for (var curDirectory = agentDiscoveryDirectory; curDirectory != null; curDirectory = curDirectory.getParentFile()) {
                 var mountConfigAnchorPath = FileHelper.tryCombinePaths(curDirectory.toString(), ".mount-configuration")
@@ -266,6 +385,8 @@ import java.util.Optional;
                 if (!Files.exists(mountConfigAnchorPath))
                     continue;
 
+                // отпечаток снимаем до чтения, чтобы изменение во время чтения было обнаружено следующей проверкой
+                var mountConfigFingerprint = FileFingerprint.take(mountConfigAnchorPath.toFile(), null, false);
                 var declarationStorage = FileHelper.readFile(mountConfigAnchorPath.toString());
                 if (StringHelper.isNullOrWhitespace(declarationStorage)) {
                     throw new ApplicationException(String.format(".mount-configuration file content is empty, [%s]", mountConfigAnchorPath));
@@ -288,7 +409,7 @@ import java.util.Optional;
                         throw new ApplicationException(String.format("Невозможно создать папку с путем [%s] взятому из .mount-configuration [%s]", storageFullPathFolder, mountConfigAnchorPath));
                 }
 
-                return Either.right(storageFullPathFolder);
+                return Either.right(new AgentDirectory(storageFullPathFolder, mountConfigAnchorPath, mountConfigFingerprint));
             }
 
             return Either.left(new ApplicationException(String.format("Couldn't find .mount-configuration file at [%s] or it parents", agentDiscoveryDirectory.getAbsolutePath())));
@@ -296,4 +417,37 @@ import java.util.Optional;
             return Either.left(e);
         }
     }
+
+    /**
+     * Директория агента и файл .mount-configuration, из которого она определена
+     */
+    private static class AgentDirectory {
+        private final File directory;
+        private final Path mountConfigFile;
+        private final FileFingerprint mountConfigFingerprint;
+
+        private AgentDirectory(File directory, Path mountConfigFile, FileFingerprint mountConfigFingerprint) {
+            this.directory = directory;
+            this.mountConfigFile = mountConfigFile;
+            this.mountConfigFingerprint = mountConfigFingerprint;
+        }
+    }
+
+    /**
+     * Декларация, подготовленная к публикации агенту
+     */
+    private static class PreparedDeclaration {
+        private final String name;
+        private final String version;
+        private final String hash;
+        /** итоговый документ, null если декларация взята из предыдущего контекста */
+        private final @Nullable Document document;
+
+        private PreparedDeclaration(String name, String version, String hash, @Nullable Document document) {
+            this.name = name;
+            this.version = version;
+            this.hash = hash;
+            this.document = document;
+        }
+    }
 }
@@ -6,19 +6,21 @@ import lombok.val;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import sharedconfig.core.exceptions.StoreNotLoadedException;
-import sharedconfig.core.interfaces.IScopedConfigurationService;
 import sharedconfig.core.interfaces.IConfigurationVersionSnapshot;
-import sharedconfig.core.interfaces.ISharedConfigMonitor;
+import sharedconfig.core.interfaces.IObservableConfigurationService;
+import sharedconfig.core.interfaces.IObservableSharedConfigMonitor;
+import sharedconfig.core.interfaces.ISharedConfigSubscription;
 import sharedconfig.utils.tuples.NameVersionTuple;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 @AllArgsConstructor
 @Log4j2
 /* package */ class ApplicationScopedConfigurationService<Configuration>
-        implements IScopedConfigurationService<Configuration> {
+        implements IObservableConfigurationService<Configuration>, IStoreBoundService {
     private final @NotNull ConfigurationEngine engine;
     private final @NotNull NameVersionTuple applicationId;
     private final @NotNull Function<@NotNull IConfigurationVersionSnapshot, @NotNull Configuration> builder;
@@ -36,7 +38,12 @@ import java.util.function.Supplier;
             return Collections.emptySortedSet();
         }
 
-        return Collections.unmodifiableSortedSet(store.actualChangesetIds);
+        return store.getState().getActualChangesetIds();
+    }
+
+    @Override
+    public @Nullable Object getStoreIdentity() {
+        return engine.store;
     }
 
     @Override
@@ -49,7 +56,7 @@ import java.util.function.Supplier;
     }
 
     @Override
-    public @NotNull ISharedConfigMonitor<Configuration> getObservedVersion() {
+    public @NotNull IObservableSharedConfigMonitor<Configuration> getObservedVersion() {
         return new SharedConfigMonitor<>(this);
     }
 
@@ -57,32 +64,31 @@ import java.util.function.Supplier;
         if (confVersion == null)
             return null;
 
-        var chagesetId = confVersion.getVersion();
-        var allVersionVarValues = confVersion.getStoreItem().getVariables();
-        var store = engine.store; assert store != null;
-        var resultVars = new HashMap<String, String>();
-
-        // отбираем переменные уровня application
-        for (var appVariable : store.getApplicationInvDeclaration().getApplication().getVariables().values()) {
-            var appVariableValue = allVersionVarValues.get(appVariable.getId());
-            if (appVariableValue != null) {
-                resultVars.put(appVariable.getName(), appVariableValue.getValue());
-            }
-        }
+        var scopeIndex = confVersion.tryGetScopeIndex();
+        if (scopeIndex == null)
+            return null;
 
-        // отбираем все переменные уровня блока без конфликта имен
-        for (var block : store.getApplicationInvDeclaration().getBlocks().values()) {
-            for (var blockVariable : block.getVariables().values()) {
-                var blockVariableValue = allVersionVarValues.get(blockVariable.getId());
-                if (blockVariableValue != null && !resultVars.containsKey(blockVariable.getName())) {
-                    resultVars.put(blockVariable.getName(), blockVariableValue.getValue());
-                }
-            }
-        }
+        return new ConfigurationVersionSnapshot(confVersion.getVersion(), scopeIndex.getApplicationVariables());
+    }
 
-        return new ConfigurationVersionSnapshot(chagesetId, Collections.unmodifiableMap(resultVars));
+
+    /**
+     * Снимок последней версии скоупа или null, если версия недоступна
+     */
+    private @Nullable ConfigurationVersionSnapshot tryGetLastSnapshot() {
+        var store = engine.store;
+        if (store == null)
+            return null;
+
+        var state = store.getState();
+        var maxChangesetId = state.getMaxChangesetId();
+        return maxChangesetId == null ? null : toScopedSnapshot(state.getVersions().get(maxChangesetId));
     }
 
+    @Override
+    public @NotNull ISharedConfigSubscription onChange(@NotNull Consumer<Configuration> listener) {
+        return engine.getChangeNotifier().subscribe(this::tryGetLastSnapshot, builder, listener);
+    }
 
     @Override
     public Configuration getLastVersion() throws StoreNotLoadedException {
@@ -92,12 +98,14 @@ import java.util.function.Supplier;
             return builder.apply(ConfigurationVersionSnapshot.empty());
         }
 
-        if (store.maxChangesetId == null) {
+        var state = store.getState();
+        var maxChangesetId = state.getMaxChangesetId();
+        if (maxChangesetId == null) {
             log.warn("Unsuccessful attempt to get last version - no changeset found. Returning default");
             return builder.apply(ConfigurationVersionSnapshot.empty());
         }
 
-        var version = toScopedSnapshot(store.getVersions().get(store.maxChangesetId));
+        var version = toScopedSnapshot(state.getVersions().get(maxChangesetId));
         if (version == null) {
             version = ConfigurationVersionSnapshot.empty();
         }
@@ -112,7 +120,7 @@ import java.util.function.Supplier;
             return Optional.empty();
         }
 
-        var version = toScopedSnapshot(store.getVersions().get(versionId));
+        var version = toScopedSnapshot(store.getState().getVersions().get(versionId));
         if (version == null) {
             return Optional.empty();
         }
@@ -2,10 +2,12 @@ package sharedconfig.core;
 
 import lombok.Getter;
 import lombok.SneakyThrows;
+import lombok.With;
 import lombok.extern.log4j.Log4j2;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import sharedconfig.core.exceptions.ApplicationSettingsCreationException;
+import sharedconfig.core.interfaces.ISharedConfigMetrics;
 import sharedconfig.helpers.FileHelper;
 import sharedconfig.helpers.StringHelper;
 import sharedconfig.utils.Either;
@@ -14,7 +16,9 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 public class ApplicationSettings {
     @Getter @NotNull private final String basePath;
@@ -24,6 +28,34 @@ public class ApplicationSettings {
     @Getter @NotNull private final Path baseDirectory;
     @Getter @NotNull private final File declarationFile;
     @Getter @NotNull private final Path storageDirectory;
+    /** Интервал проверки изменений в конфигурации */
+    @Getter @With @NotNull private final Duration pollInterval;
+    /** Способ обнаружения изменений в конфигурации */
+    @Getter @With @NotNull private final ChangeDetectionMode changeDetectionMode;
+    /** Интервал страховочного опроса в режиме {@link ChangeDetectionMode#WATCH} */
+    @Getter @With @NotNull private final Duration watchFallbackInterval;
+    /** Способ разбора файлов prepared.vars.xml */
+    @Getter @With @NotNull private final PreparedVarsParser preparedVarsParser;
+    /** Способ определения изменений файлов хранилища */
+    @Getter @With @NotNull private final FileFingerprintMode fileFingerprintMode;
+    /** Количество источников (prepared.vars.xml), загружаемых одновременно, 1 - последовательная загрузка */
+    @Getter @With private final int storeLoadParallelism;
+    /** Executor для вызова подписчиков на изменения конфигурации, если не задан - используется отдельный поток движка */
+    @Getter @With @Nullable private final Executor changeListenerExecutor;
+    /** Количество последних актуальных changeset'ов, данные которых удерживаются в памяти, 0 - без ограничения */
+    @Getter @With private final int retainedVersionCount;
+    /** Время, в течение которого доступны удаленные changeset'ы, null - удаленные changeset'ы не вытесняются */
+    @Getter @With @Nullable private final Duration deprecatedVersionRetention;
+    /** Перечитывать ли данные вытесненных changeset'ов при обращении, иначе вытесненные changeset'ы становятся недоступны */
+    @Getter @With private final boolean reloadEvictedVersions;
+    /** Загружать при обновлении хранилища только последний changeset, остальные загружаются при первом обращении */
+    @Getter @With private final boolean lazyVersionLoading;
+    /** Сохранять разобранные prepared.vars.xml в двоичный кэш в директории хранилища приложения для быстрого перезапуска */
+    @Getter @With private final boolean preparedVarsCacheEnabled;
+    /** Способ хранения значений переменных загруженных changeset'ов */
+    @Getter @With @NotNull private final VariableStorage variableStorage;
+    /** Приемник метрик движка, по умолчанию метрики не собираются */
+    @Getter @With @NotNull private final ISharedConfigMetrics metrics;
 
     private ApplicationSettings(@NotNull String basePath,
                                 @NotNull String declarationPath,
@@ -31,14 +63,45 @@ public class ApplicationSettings {
                                 @NotNull String version,
                                 @NotNull Path baseDirectory,
                                 @NotNull File declarationFile,
-                                @NotNull Path storageDirectory) {
-        this.basePath         = basePath;
-        this.declarationPath  = declarationPath;
-        this.name             = name;
-        this.version          = version;
-        this.baseDirectory    = baseDirectory;
-        this.declarationFile  = declarationFile;
-        this.storageDirectory = storageDirectory;
+                                @NotNull Path storageDirectory,
+                                @NotNull Duration pollInterval,
+                                @NotNull ChangeDetectionMode changeDetectionMode,
+                                @NotNull Duration watchFallbackInterval,
+                                @NotNull PreparedVarsParser preparedVarsParser,
+                                @NotNull FileFingerprintMode fileFingerprintMode,
+                                int storeLoadParallelism,
+                                @Nullable Executor changeListenerExecutor,
+                                int retainedVersionCount,
+                                @Nullable Duration deprecatedVersionRetention,
+                                boolean reloadEvictedVersions,
+                                boolean lazyVersionLoading,
+                                boolean preparedVarsCacheEnabled,
+                                @NotNull VariableStorage variableStorage,
+                                @NotNull ISharedConfigMetrics metrics) {
+        if (storeLoadParallelism < 1)
+            throw new IllegalArgumentException("Value must be greater than zero. storeLoadParallelism");
+
+        this.basePath              = basePath;
+        this.declarationPath       = declarationPath;
+        this.name                  = name;
+        this.version               = version;
+        this.baseDirectory         = baseDirectory;
+        this.declarationFile       = declarationFile;
+        this.storageDirectory      = storageDirectory;
+        this.pollInterval          = pollInterval;
+        this.changeDetectionMode   = changeDetectionMode;
+        this.watchFallbackInterval = watchFallbackInterval;
+        this.preparedVarsParser    = preparedVarsParser;
+        this.fileFingerprintMode   = fileFingerprintMode;
+        this.storeLoadParallelism  = storeLoadParallelism;
+        this.changeListenerExecutor = changeListenerExecutor;
+        this.retainedVersionCount  = retainedVersionCount;
+        this.deprecatedVersionRetention = deprecatedVersionRetention;
+        this.reloadEvictedVersions = reloadEvictedVersions;
+        this.lazyVersionLoading    = lazyVersionLoading;
+        this.preparedVarsCacheEnabled = preparedVarsCacheEnabled;
+        this.variableStorage       = variableStorage;
+        this.metrics               = metrics;
     }
 
     /**
@@ -88,7 +151,9 @@ public class ApplicationSettings {
             if (Files.notExists(declarationPathProcessed))
                 throw new ApplicationSettingsCreationException(String.format("Не найден файл декларации приложения: [%s]", declarationPathProcessed.toAbsolutePath()));
 
-            return new ApplicationSettings(basePath, declarationPath, name, version, basePathProcessed, declarationPathProcessed.toFile(), storagePathProcessed);
+            return new ApplicationSettings(basePath, declarationPath, name, version, basePathProcessed, declarationPathProcessed.toFile(), storagePathProcessed,
+                    Duration.ofMillis(500), ChangeDetectionMode.POLLING, Duration.ofSeconds(10), PreparedVarsParser.STAX, FileFingerprintMode.CONTENT, 1, null,
+                    0, null, false, false, false, VariableStorage.HEAP, NoopSharedConfigMetrics.INSTANCE);
         } catch (ApplicationSettingsCreationException ex) {
             throw ex;
         } catch (Exception ex) {
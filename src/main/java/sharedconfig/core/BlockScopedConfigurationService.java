@@ -5,26 +5,28 @@ import lombok.val;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import sharedconfig.core.exceptions.StoreNotLoadedException;
-import sharedconfig.core.interfaces.IScopedConfigurationService;
 import sharedconfig.core.interfaces.IConfigurationVersionSnapshot;
-import sharedconfig.core.interfaces.ISharedConfigMonitor;
+import sharedconfig.core.interfaces.IObservableConfigurationService;
+import sharedconfig.core.interfaces.IObservableSharedConfigMonitor;
+import sharedconfig.core.interfaces.ISharedConfigSubscription;
 import sharedconfig.utils.Version;
 import sharedconfig.utils.tuples.NameVersionTuple;
 import sharedconfig.utils.tuples.StrictNameVersionTuple;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
 @Log4j2
 /* package */ class BlockScopedConfigurationService<Configuration>
-        implements IScopedConfigurationService<Configuration>  {
+        implements IObservableConfigurationService<Configuration>, IStoreBoundService  {
     private final @NotNull ConfigurationEngine engine;
     private final @NotNull String blockName;
     private final @Nullable String blockVersion;
     private final @NotNull Function<@NotNull IConfigurationVersionSnapshot, @NotNull Configuration> builder;
-    private @Nullable StrictNameVersionTuple blockId = null;
-    private @Nullable Boolean blockExists = null;
+    private volatile @Nullable StrictNameVersionTuple blockId = null;
+    private volatile @Nullable Boolean blockExists = null;
 
     public BlockScopedConfigurationService(@NotNull ConfigurationEngine engine, @NotNull String blockName, @Nullable String blockVersion, @NotNull Function<@NotNull IConfigurationVersionSnapshot, @NotNull Configuration> builder) {
         this.engine = engine;
@@ -82,14 +84,19 @@ import java.util.function.Supplier;
             return Collections.emptySortedSet();
         }
 
-        return Collections.unmodifiableSortedSet(store.actualChangesetIds);
+        return store.getState().getActualChangesetIds();
     }
 
     @Override
-    public @NotNull ISharedConfigMonitor<Configuration> getObservedVersion() {
+    public @NotNull IObservableSharedConfigMonitor<Configuration> getObservedVersion() {
         return new SharedConfigMonitor<>(this);
     }
 
+    @Override
+    public @Nullable Object getStoreIdentity() {
+        return engine.store;
+    }
+
     @Override
     public @Nullable Long getLatestVersionId() {
         var store = engine.store;
@@ -103,21 +110,35 @@ import java.util.function.Supplier;
         if (confVersion == null)
             return null;
 
-        var chagesetId = confVersion.getVersion();
-        var allVersionVarValues = confVersion.getStoreItem().getVariables();
-        var store = engine.store;
-        var resultVars = new HashMap<String, String>();
-
-        assert store != null;
         assert this.blockId != null;
-        for (var blockVariable : store.getApplicationInvDeclaration().getBlocks().get(this.blockId).getVariables().values()) {
-            var blockVariableValue = allVersionVarValues.get(blockVariable.getId());
-            if (blockVariableValue != null) {
-                resultVars.put(blockVariable.getName(), blockVariableValue.getValue());
-            }
+        var scopeIndex = confVersion.tryGetScopeIndex();
+        if (scopeIndex == null)
+            return null;
+
+        return new ConfigurationVersionSnapshot(confVersion.getVersion(), scopeIndex.getBlockVariables(this.blockId));
+    }
+
+    /**
+     * Снимок последней версии скоупа или null, если версия недоступна
+     */
+    private @Nullable ConfigurationVersionSnapshot tryGetLastSnapshot() {
+        try {
+            ensureBlockInfoLoaded();
+        } catch (StoreNotLoadedException e) {
+            return null;
         }
+        if (!Boolean.TRUE.equals(this.blockExists))
+            return null;
 
-        return new ConfigurationVersionSnapshot(chagesetId, Collections.unmodifiableMap(resultVars));
+        var store = engine.store; assert store != null;
+        var state = store.getState();
+        var maxChangesetId = state.getMaxChangesetId();
+        return maxChangesetId == null ? null : toScopedSnapshot(state.getVersions().get(maxChangesetId));
+    }
+
+    @Override
+    public @NotNull ISharedConfigSubscription onChange(@NotNull Consumer<Configuration> listener) {
+        return engine.getChangeNotifier().subscribe(this::tryGetLastSnapshot, builder, listener);
     }
 
     @Override
@@ -129,12 +150,14 @@ import java.util.function.Supplier;
         }
 
         var store = engine.store; assert store != null;
-        if (store.maxChangesetId == null) {
+        var state = store.getState();
+        var maxChangesetId = state.getMaxChangesetId();
+        if (maxChangesetId == null) {
             log.warn("Unsuccessful attempt to get last version - no changeset found. Returning default version");
             return builder.apply(ConfigurationVersionSnapshot.empty());
         }
 
-        var version = toScopedSnapshot(store.getVersions().get(store.maxChangesetId));
+        var version = toScopedSnapshot(state.getVersions().get(maxChangesetId));
         if (version == null) {
             version = ConfigurationVersionSnapshot.empty();
         }
@@ -150,7 +173,7 @@ import java.util.function.Supplier;
         }
 
         var store = engine.store; assert store != null;
-        var version = toScopedSnapshot(store.getVersions().get(versionId));
+        var version = toScopedSnapshot(store.getState().getVersions().get(versionId));
         if (version == null) {
             return Optional.empty();
         }
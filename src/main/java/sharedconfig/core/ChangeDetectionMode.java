@@ -0,0 +1,11 @@
+package sharedconfig.core;
+
+/**
+ * Способ обнаружения изменений в конфигурации
+ */
+public enum ChangeDetectionMode {
+    /** Периодический опрос файловой системы */
+    POLLING,
+    /** Подписка на события файловой системы через WatchService, опрос используется как страховка */
+    WATCH
+}
@@ -0,0 +1,176 @@
+package sharedconfig.core;
+
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import sharedconfig.core.interfaces.IConfigurationVersionSnapshot;
+import sharedconfig.core.interfaces.ISharedConfigSubscription;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Рассылка уведомлений об изменении конфигурации подписчикам движка.
+ * Подписчики вызываются на отдельном executor'е, чтобы медленный подписчик не задерживал фоновое обновление хранилища.
+ * Уведомления одного подписчика не выполняются параллельно и схлопываются, если подписчик не успевает их обрабатывать
+ */
+@Log4j2
+/* package */ class ConfigurationChangeNotifier implements AutoCloseable {
+    private final @Nullable Executor configuredExecutor;
+    private final CopyOnWriteArrayList<Subscription<?>> subscriptions = new CopyOnWriteArrayList<>();
+    private final Object syncObject = new Object();
+    /** собственный executor, создается при первой подписке если executor не задан в настройках */
+    private @Nullable ExecutorService ownExecutor;
+    /** закрыт ли рассыльщик, изменяется под блокировкой syncObject */
+    private boolean closed = false;
+    /** подписка, возвращаемая после закрытия */
+    private static final ISharedConfigSubscription closedSubscription = () -> {};
+
+    /** хранилище и его версия на момент последнего уведомления, изменяются только потоком обновления */
+    private @Nullable ConfigurationStore notifiedStore;
+    private long notifiedStoreVersion = 0;
+
+    public ConfigurationChangeNotifier(@Nullable Executor configuredExecutor) {
+        this.configuredExecutor = configuredExecutor;
+    }
+
+    /**
+     * Подписаться на изменения
+     * @param snapshotProvider поставщик снимка последней версии скоупа, null если версия недоступна
+     * @param builder построитель конфигурации из снимка
+     * @param listener подписчик
+     */
+    public <T> @NotNull ISharedConfigSubscription subscribe(@NotNull Supplier<@Nullable IConfigurationVersionSnapshot> snapshotProvider,
+                                                            @NotNull Function<@NotNull IConfigurationVersionSnapshot, T> builder,
+                                                            @NotNull Consumer<T> listener) {
+        synchronized (syncObject) {
+            // после закрытия подписчик никогда не вызывается, собственный executor не создается
+            if (closed)
+                return closedSubscription;
+
+            var subscription = new Subscription<>(snapshotProvider, builder, listener, getExecutor());
+            subscriptions.add(subscription);
+            return subscription;
+        }
+    }
+
+    /**
+     * Уведомить подписчиков, если версия хранилища изменилась с момента последнего уведомления
+     */
+    public void storeRefreshed(@NotNull ConfigurationStore store) {
+        var storeVersion = store.getVersion();
+        if (store == notifiedStore && storeVersion == notifiedStoreVersion)
+            return;
+
+        notifiedStore = store;
+        notifiedStoreVersion = storeVersion;
+        for (var subscription : subscriptions) {
+            subscription.signal();
+        }
+    }
+
+    /**
+     * Executor подписчиков, вызывается под блокировкой syncObject
+     */
+    private @NotNull Executor getExecutor() {
+        if (configuredExecutor != null)
+            return configuredExecutor;
+
+        if (ownExecutor == null) {
+            ownExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                var thread = new Thread(runnable, "sharedconfig-change-listener");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return ownExecutor;
+    }
+
+    @Override
+    public void close() {
+        synchronized (syncObject) {
+            closed = true;
+            subscriptions.clear();
+            if (ownExecutor != null)
+                ownExecutor.shutdown();
+        }
+    }
+
+    private final class Subscription<T> implements ISharedConfigSubscription {
+        private final @NotNull Supplier<@Nullable IConfigurationVersionSnapshot> snapshotProvider;
+        private final @NotNull Function<@NotNull IConfigurationVersionSnapshot, T> builder;
+        private final @NotNull Consumer<T> listener;
+        private final @NotNull Executor executor;
+        /** количество необработанных уведомлений */
+        private final AtomicInteger pending = new AtomicInteger();
+        /** переменные последней доставленной подписчику версии, изменяются только при обработке уведомлений */
+        private @Nullable Map<String, String> deliveredVariables;
+        private volatile boolean active = true;
+
+        private Subscription(@NotNull Supplier<@Nullable IConfigurationVersionSnapshot> snapshotProvider,
+                             @NotNull Function<@NotNull IConfigurationVersionSnapshot, T> builder,
+                             @NotNull Consumer<T> listener,
+                             @NotNull Executor executor) {
+            this.snapshotProvider = snapshotProvider;
+            this.builder = builder;
+            this.listener = listener;
+            this.executor = executor;
+            // текущая версия считается уже известной подписчику
+            var snapshot = snapshotProvider.get();
+            this.deliveredVariables = snapshot == null ? null : snapshot.getVariables();
+        }
+
+        private void signal() {
+            if (!active || pending.getAndIncrement() != 0)
+                return;
+
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                pending.set(0);
+                log.trace("Change listener executor is shut down, change will be ignored");
+            }
+        }
+
+        private void drain() {
+            var missed = pending.get();
+            while (true) {
+                deliver();
+                missed = pending.addAndGet(-missed);
+                if (missed == 0)
+                    return;
+            }
+        }
+
+        private void deliver() {
+            if (!active)
+                return;
+
+            try {
+                var snapshot = snapshotProvider.get();
+                if (snapshot == null)
+                    return;
+
+                var variables = snapshot.getVariables();
+                if (variables == deliveredVariables || Objects.equals(variables, deliveredVariables))
+                    return;
+
+                deliveredVariables = variables;
+                listener.accept(builder.apply(snapshot));
+            } catch (Exception e) {
+                log.warn("Error on notifying configuration change listener", e);
+            }
+        }
+
+        @Override
+        public void close() {
+            active = false;
+            subscriptions.remove(this);
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package sharedconfig.core;
+
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+import sharedconfig.utils.Either;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Наблюдатель за директориями конфигурации на основе {@link WatchService}.
+ * Каждый подписчик регистрирует набор директорий, при любом событии в директории вызывается обработчик для всех ее подписчиков
+ */
+@Log4j2
+/* package */ class ConfigurationChangeWatcher<T> implements AutoCloseable {
+    private final @NotNull WatchService watchService;
+    private final @NotNull Consumer<T> changeHandler;
+    private final @NotNull Thread watchThread;
+    private final Object syncObject = new Object();
+    /** зарегистрированные директории */
+    private final HashMap<Path, WatchKey> watchKeys = new HashMap<>();
+    /** подписчики директории */
+    private final HashMap<Path, Set<T>> subscribers = new HashMap<>();
+    /** директории подписчика */
+    private final HashMap<T, Set<Path>> subscriptions = new HashMap<>();
+    private volatile boolean closed = false;
+
+    private ConfigurationChangeWatcher(@NotNull WatchService watchService, @NotNull Consumer<T> changeHandler) {
+        this.watchService = watchService;
+        this.changeHandler = changeHandler;
+        this.watchThread = new Thread(this::processEvents, "sharedconfig-change-watcher");
+        this.watchThread.setDaemon(true);
+    }
+
+    public static <T> Either<Exception, ConfigurationChangeWatcher<T>> tryCreate(@NotNull Consumer<T> changeHandler) {
+        try {
+            var watcher = new ConfigurationChangeWatcher<>(FileSystems.getDefault().newWatchService(), changeHandler);
+            watcher.watchThread.start();
+            return Either.right(watcher);
+        } catch (Exception e) {
+            return Either.left(e);
+        }
+    }
+
+    /**
+     * Заменить набор наблюдаемых подписчиком директорий
+     * @return true если наблюдение за какой-либо из директорий началось только сейчас,
+     * изменения в ней до этого момента не были отслежены
+     */
+    public boolean watch(@NotNull T subscriber, @NotNull Collection<Path> directories) {
+        synchronized (syncObject) {
+            if (closed)
+                return false;
+
+            var current = subscriptions.getOrDefault(subscriber, Collections.emptySet());
+            var requested = new HashSet<Path>(directories.size());
+            for (var directory : directories) {
+                requested.add(directory.toAbsolutePath().normalize());
+            }
+
+            for (var directory : current) {
+                if (!requested.contains(directory))
+                    unsubscribe(subscriber, directory);
+            }
+
+            var registered = new HashSet<Path>(requested.size());
+            for (var directory : requested) {
+                if (subscribe(subscriber, directory))
+                    registered.add(directory);
+            }
+
+            if (registered.isEmpty()) {
+                subscriptions.remove(subscriber);
+            } else {
+                subscriptions.put(subscriber, registered);
+            }
+            return !current.containsAll(registered);
+        }
+    }
+
+    /**
+     * Прекратить наблюдение за всеми директориями подписчика
+     */
+    public void unwatch(@NotNull T subscriber) {
+        synchronized (syncObject) {
+            var current = subscriptions.remove(subscriber);
+            if (current == null)
+                return;
+
+            for (var directory : current) {
+                unsubscribe(subscriber, directory);
+            }
+        }
+    }
+
+    private boolean subscribe(@NotNull T subscriber, @NotNull Path directory) {
+        var key = watchKeys.get(directory);
+        if (key == null || !key.isValid()) {
+            if (!Files.isDirectory(directory)) {
+                log.trace("Directory '{}' doesn't exist and can't be watched", directory);
+                return false;
+            }
+            try {
+                key = directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            } catch (IOException e) {
+                log.warn("Couldn't register directory '{}' for watching", directory, e);
+                return false;
+            }
+            watchKeys.put(directory, key);
+            log.trace("Directory '{}' registered for watching", directory);
+        }
+        subscribers.computeIfAbsent(directory, (__) -> new HashSet<>()).add(subscriber);
+        return true;
+    }
+
+    private void unsubscribe(@NotNull T subscriber, @NotNull Path directory) {
+        var directorySubscribers = subscribers.get(directory);
+        if (directorySubscribers == null)
+            return;
+
+        directorySubscribers.remove(subscriber);
+        if (!directorySubscribers.isEmpty())
+            return;
+
+        subscribers.remove(directory);
+        var key = watchKeys.remove(directory);
+        if (key != null) {
+            key.cancel();
+            log.trace("Directory '{}' is no longer watched", directory);
+        }
+    }
+
+    private void processEvents() {
+        while (!closed) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            var directory = (Path) key.watchable();
+            var events = key.pollEvents();
+            var isValid = key.reset();
+            log.trace("Detected {} changes in directory '{}'", events.size(), directory);
+
+            List<T> targets;
+            synchronized (syncObject) {
+                var directorySubscribers = subscribers.get(directory);
+                targets = directorySubscribers == null ? Collections.emptyList() : new ArrayList<>(directorySubscribers);
+                if (!isValid && watchKeys.get(directory) == key) {
+                    // директория удалена - при следующей регистрации попробуем подписаться заново
+                    watchKeys.remove(directory);
+                    subscribers.remove(directory);
+                    for (var target : targets) {
+                        var targetDirectories = subscriptions.get(target);
+                        if (targetDirectories != null)
+                            targetDirectories.remove(directory);
+                    }
+                }
+            }
+
+            for (var target : targets) {
+                try {
+                    changeHandler.accept(target);
+                } catch (Exception e) {
+                    log.warn("Error on handling change in directory '{}'", directory, e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (syncObject) {
+            closed = true;
+            watchKeys.clear();
+            subscribers.clear();
+            subscriptions.clear();
+        }
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Couldn't close watch service", e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package sharedconfig.core;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
@@ -7,13 +8,18 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import sharedconfig.core.exceptions.ConfigurationEngineCreationException;
 import sharedconfig.core.interfaces.IConfigurationVersionSnapshot;
-import sharedconfig.core.interfaces.IScopedConfigurationService;
+import sharedconfig.core.interfaces.IObservableConfigurationService;
+import sharedconfig.core.interfaces.ISharedConfigMetrics;
 import sharedconfig.utils.tuples.NameVersionTuple;
 import sharedconfig.utils.tuples.StrictNameVersionTuple;
 
 import java.io.File;
-import java.util.Optional;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 @Log4j2
@@ -21,14 +27,33 @@ public class ConfigurationEngine implements AutoCloseable {
     @Getter
     private final @NotNull ApplicationSettings applicationSettings;
     private final @NotNull File agentDiscoveryDirectory;
+    /** хранилище создается фоновым потоком и читается потоками приложения */
     @Getter
-    /*package*/ @Nullable ConfigurationStore store;
-    private final Object waitStoreSyncObject = new Object();
+    /*package*/ volatile @Nullable ConfigurationStore store;
+    /** завершается при первом успешном построении хранилища (агент найден, приложение опубликовано) */
+    private final CompletableFuture<ConfigurationEngine> agentReady = new CompletableFuture<>();
+    /** завершается при первой загрузке данных хранилища */
+    private final CompletableFuture<ConfigurationEngine> storeLoaded = new CompletableFuture<>();
+    /** в наблюдаемых директориях были обнаружены изменения */
+    private volatile boolean changeDetected = true;
+    /** время последней проверки изменений */
+    private volatile long lastUpdateTime = 0;
+    /** блокировка на время проверки изменений, чтобы после close() обновления не выполнялись */
+    private final Object updateSyncObject = new Object();
+    private volatile boolean isClosed = false;
+    /** выполняется ли проверка изменений, чтобы проверки одного движка не пересекались */
+    private final AtomicBoolean isUpdating = new AtomicBoolean(false);
+    /** периодическая проверка изменений движка */
+    private volatile @Nullable ScheduledFuture<?> updateSchedule;
+    /** рассылка уведомлений подписчикам на изменения конфигурации */
+    @Getter(AccessLevel.PACKAGE)
+    private final @NotNull ConfigurationChangeNotifier changeNotifier;
     private static final BackgroundWorker worker = new BackgroundWorker();
 
     private ConfigurationEngine(@NotNull ApplicationSettings applicationSettings, @NotNull File agentDiscoveryDirectory) {
         this.applicationSettings = applicationSettings;
         this.agentDiscoveryDirectory = agentDiscoveryDirectory;
+        this.changeNotifier = new ConfigurationChangeNotifier(applicationSettings.getChangeListenerExecutor());
     }
 
     public static ConfigurationEngine create(@NotNull ApplicationSettings applicationSettings, @Nullable String agentDiscoveryPath) throws ConfigurationEngineCreationException {
@@ -37,46 +62,86 @@ public class ConfigurationEngine implements AutoCloseable {
         return worker.put(applicationSettings, discoveryDirectory.toFile());
     }
 
+    /**
+     * Требуется ли проверка изменений в конфигурации
+     * @param isWatchAvailable доступно ли наблюдение за директориями
+     */
+    private boolean isUpdateRequired(boolean isWatchAvailable) {
+        if (!isWatchAvailable || this.applicationSettings.getChangeDetectionMode() != ChangeDetectionMode.WATCH)
+            return true;
+
+        // пока хранилище не загружено - наблюдать не за чем
+        var store = this.store;
+        if (store == null || store.getVersion() == 0)
+            return true;
+
+        return this.changeDetected
+                || System.currentTimeMillis() - this.lastUpdateTime >= this.applicationSettings.getWatchFallbackInterval().toMillis();
+    }
+
+    /**
+     * Получить директории, за изменениями в которых нужно наблюдать
+     */
+    private @NotNull List<Path> getWatchedDirectories() {
+        var store = this.store;
+        if (store == null)
+            return List.of();
+
+        var result = new ArrayList<Path>(store.getWatchedDirectories());
+        result.add(new File(store.getApplicationContext().getAgentDirectoryFullName()).toPath());
+        return result;
+    }
+
     /**
      * Метод проверки изменений в конфигурации
      */
     @SneakyThrows
     private void tryUpdate() {
+        this.changeDetected = false;
+        this.lastUpdateTime = System.currentTimeMillis();
+        var metrics = this.applicationSettings.getMetrics();
+        var startTime = System.nanoTime();
 
         var appCtx = this.store == null ? null : this.store.getApplicationContext();
         var applicationContext = ApplicationContext.create(appCtx, this.applicationSettings, this.agentDiscoveryDirectory);
+        metrics.recordDuration(ISharedConfigMetrics.CONTEXT_CREATE_DURATION, System.nanoTime() - startTime);
 
         if (this.store == null || this.store.getApplicationContext() != applicationContext) {
             // Создаем контроллер хранилища подготовленной конфигурационной информации
             this.store = ConfigurationStore.builder().tryBuild(applicationContext).getRightOrThrow();
-
-            synchronized (this.waitStoreSyncObject) {
-                this.waitStoreSyncObject.notify();
-            }
+            this.agentReady.complete(this);
         }
 
         this.store.refresh();
-    }
+        if (this.store.getVersion() > 0)
+            this.storeLoaded.complete(this);
+        this.changeNotifier.storeRefreshed(this.store);
 
-    private Optional<ConfigurationStore> tryGetStore(int waitMilliseconds) {
-        var value = this.store;
-        if (value != null)
-            return Optional.of(value);
+        metrics.recordDuration(ISharedConfigMetrics.REFRESH_DURATION, System.nanoTime() - startTime);
+        metrics.setGauge(ISharedConfigMetrics.STORE_REFRESH_TIME, System.currentTimeMillis());
+    }
 
-        long startTime = System.currentTimeMillis();
-        long stopTime = startTime;
+    /**
+     * Приемник метрик движка, задается в настройках приложения
+     */
+    public @NotNull ISharedConfigMetrics getMetrics() {
+        return this.applicationSettings.getMetrics();
+    }
 
-        while ((value = this.store) == null && (stopTime - startTime) < waitMilliseconds) {
-            synchronized (this.waitStoreSyncObject) {
-                try {
-                    this.waitStoreSyncObject.wait(30);
-                } catch (InterruptedException ignored) {
-                }
-            }
-            stopTime = System.currentTimeMillis();
-        }
+    /**
+     * Сигнал готовности агента: хранилище построено, приложение опубликовано агенту.
+     * Завершается исключением, если движок закрыт раньше
+     */
+    public @NotNull CompletableFuture<ConfigurationEngine> agentReady() {
+        return this.agentReady.copy();
+    }
 
-        return Optional.ofNullable(value);
+    /**
+     * Сигнал загрузки хранилища: данные prepared.xml загружены хотя бы один раз.
+     * Завершается исключением, если движок закрыт раньше
+     */
+    public @NotNull CompletableFuture<ConfigurationEngine> storeLoaded() {
+        return this.storeLoaded.copy();
     }
 
     public boolean waitAgent() {
@@ -84,9 +149,7 @@ public class ConfigurationEngine implements AutoCloseable {
     }
 
     public boolean waitAgent(int waitMilliseconds) {
-        ConfigurationStore tmpStore = null;
-        tmpStore = this.tryGetStore(waitMilliseconds).orElse(null);
-        return this.store == tmpStore && tmpStore != null && tmpStore.getApplicationContext() != null;
+        return await(this.agentReady, waitMilliseconds);
     }
 
     public boolean waitStore() {
@@ -94,76 +157,121 @@ public class ConfigurationEngine implements AutoCloseable {
     }
 
     public boolean waitStore(int waitMilliseconds) {
-        long startTime = System.currentTimeMillis();
-        long stopTime = startTime;
-
-        while ((stopTime - startTime) < waitMilliseconds) {
-            if (this.store != null && this.store.getVersion() > 0)
-                return true;
+        return await(this.storeLoaded, waitMilliseconds);
+    }
 
-            synchronized (this.waitStoreSyncObject) {
-                try {
-                    this.waitStoreSyncObject.wait(30);
-                } catch (InterruptedException ignored) {
-                }
-            }
-            stopTime = System.currentTimeMillis();
+    private static boolean await(@NotNull CompletableFuture<ConfigurationEngine> signal, int waitMilliseconds) {
+        try {
+            signal.get(waitMilliseconds, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | CancellationException | TimeoutException e) {
+            return false;
         }
-        return this.store != null && this.store.getVersion() > 0;
     }
 
 
-    public @NotNull IScopedConfigurationService<IConfigurationVersionSnapshot> getApplicationConfigurationService() {
-        return new ScopedServiceCashingDecorator<>(this,
-                new ApplicationScopedConfigurationService<>(this, new StrictNameVersionTuple(this.applicationSettings.getName(), this.applicationSettings.getVersion()), a -> a));
+    public @NotNull IObservableConfigurationService<IConfigurationVersionSnapshot> getApplicationConfigurationService() {
+        return new ScopedServiceCashingDecorator<>(
+                new ApplicationScopedConfigurationService<>(this, new StrictNameVersionTuple(this.applicationSettings.getName(), this.applicationSettings.getVersion()), a -> a),
+                this.applicationSettings.getMetrics());
     }
 
-    public <T> @NotNull IScopedConfigurationService<T> getApplicationConfigurationService(@NotNull Function<IConfigurationVersionSnapshot, T> builder) {
-        return new ScopedServiceCashingDecorator<>(this,
-                new ApplicationScopedConfigurationService<>(this, new StrictNameVersionTuple(this.applicationSettings.getName(), this.applicationSettings.getVersion()), builder));
+    public <T> @NotNull IObservableConfigurationService<T> getApplicationConfigurationService(@NotNull Function<IConfigurationVersionSnapshot, T> builder) {
+        return new ScopedServiceCashingDecorator<>(
+                new ApplicationScopedConfigurationService<>(this, new StrictNameVersionTuple(this.applicationSettings.getName(), this.applicationSettings.getVersion()), builder),
+                this.applicationSettings.getMetrics());
     }
 
-    public @NotNull IScopedConfigurationService<IConfigurationVersionSnapshot> getBlockConfigurationService(@NotNull String blockName) {
-        return new ScopedServiceCashingDecorator<>(this,
-                new BlockScopedConfigurationService<>(this, blockName, null, a -> a));
+    public @NotNull IObservableConfigurationService<IConfigurationVersionSnapshot> getBlockConfigurationService(@NotNull String blockName) {
+        return new ScopedServiceCashingDecorator<>(
+                new BlockScopedConfigurationService<>(this, blockName, null, a -> a),
+                this.applicationSettings.getMetrics());
     }
 
-    public <T> @NotNull IScopedConfigurationService<T> getBlockConfigurationService(@NotNull String blockName, @NotNull Function<IConfigurationVersionSnapshot, T> builder) {
-        return new ScopedServiceCashingDecorator<>(this,
-                new BlockScopedConfigurationService<>(this, blockName, null, builder));
+    public <T> @NotNull IObservableConfigurationService<T> getBlockConfigurationService(@NotNull String blockName, @NotNull Function<IConfigurationVersionSnapshot, T> builder) {
+        return new ScopedServiceCashingDecorator<>(
+                new BlockScopedConfigurationService<>(this, blockName, null, builder),
+                this.applicationSettings.getMetrics());
     }
 
-    public @NotNull IScopedConfigurationService<IConfigurationVersionSnapshot> getBlockConfigurationService(@NotNull String blockName, @NotNull String blockVersion) {
-        return new ScopedServiceCashingDecorator<>(this,
-                new BlockScopedConfigurationService<>(this, blockName, blockVersion, a -> a));
+    public @NotNull IObservableConfigurationService<IConfigurationVersionSnapshot> getBlockConfigurationService(@NotNull String blockName, @NotNull String blockVersion) {
+        return new ScopedServiceCashingDecorator<>(
+                new BlockScopedConfigurationService<>(this, blockName, blockVersion, a -> a),
+                this.applicationSettings.getMetrics());
     }
 
-    public <T> @NotNull IScopedConfigurationService<T> getBlockConfigurationService(@NotNull String blockName, @NotNull String blockVersion, @NotNull Function<IConfigurationVersionSnapshot, T> builder) {
-        return new ScopedServiceCashingDecorator<>(this,
-                new BlockScopedConfigurationService<>(this, blockName, blockVersion, builder));
+    public <T> @NotNull IObservableConfigurationService<T> getBlockConfigurationService(@NotNull String blockName, @NotNull String blockVersion, @NotNull Function<IConfigurationVersionSnapshot, T> builder) {
+        return new ScopedServiceCashingDecorator<>(
+                new BlockScopedConfigurationService<>(this, blockName, blockVersion, builder),
+                this.applicationSettings.getMetrics());
     }
 
     @Override
     public void close() {
         worker.remove(this.applicationSettings);
+        synchronized (this.updateSyncObject) {
+            this.isClosed = true;
+        }
+        this.changeNotifier.close();
+        var closedException = new IllegalStateException(String.format("Configuration engine for app '%s' version '%s' has been closed",
+                this.applicationSettings.getName(), this.applicationSettings.getVersion()));
+        this.agentReady.completeExceptionally(closedException);
+        this.storeLoaded.completeExceptionally(closedException);
     }
 
     /**
-     * Класс, инкапсулирующий логику фонового хранения и наблюдения за конфигурациями
+     * Класс, инкапсулирующий логику фонового хранения и наблюдения за конфигурациями.
+     * Каждый движок проверяется по собственному расписанию на небольшом общем пуле потоков,
+     * поэтому зависшая проверка одного движка не останавливает обновление остальных
      */
     @Log4j2
     private static class BackgroundWorker implements AutoCloseable {
         private final @NotNull ConcurrentMap<NameVersionTuple, ConfigurationEngine> engines = new ConcurrentHashMap<>();
         private final @NotNull ScheduledExecutorService backgroundWorker;
+        private final @Nullable ConfigurationChangeWatcher<ConfigurationEngine> watcher;
 
         public BackgroundWorker() {
-            this.backgroundWorker = Executors.newSingleThreadScheduledExecutor();
-            this.backgroundWorker.scheduleAtFixedRate(() -> {
-                for (var keyValue : engines.entrySet()) {
-                    var key = keyValue.getKey();
-                    var engine = keyValue.getValue();
-                    if (key == null || engine == null)
-                        continue;
+            var poolSize = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+            var threadNumber = new AtomicInteger();
+            this.backgroundWorker = Executors.newScheduledThreadPool(poolSize, runnable -> {
+                var thread = new Thread(runnable, "sharedconfig-background-worker-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            var watcherCreateResult = ConfigurationChangeWatcher.<ConfigurationEngine>tryCreate(this::onChangeDetected);
+            if (watcherCreateResult.isLeft()) {
+                log.warn("Couldn't create directory watcher, falling back to polling. {}", watcherCreateResult.getLeft().toString());
+            }
+            this.watcher = watcherCreateResult.tryGetRight().orElse(null);
+        }
+
+        /**
+         * Запустить периодическую проверку изменений движка, первая проверка выполняется сразу,
+         * начало периодических проверок смещается случайным образом, чтобы проверки разных движков не совпадали
+         */
+        private void schedule(@NotNull ConfigurationEngine engine) {
+            var pollInterval = Math.max(1, engine.applicationSettings.getPollInterval().toMillis());
+            var jitter = ThreadLocalRandom.current().nextLong(pollInterval);
+            engine.updateSchedule = this.backgroundWorker.scheduleWithFixedDelay(() -> update(engine), pollInterval + jitter, pollInterval, TimeUnit.MILLISECONDS);
+            this.backgroundWorker.execute(() -> update(engine));
+        }
+
+        private void update(@NotNull ConfigurationEngine engine) {
+            if (!engine.isUpdateRequired(this.watcher != null))
+                return;
+
+            // проверка уже выполняется в другом потоке - обнаруженные изменения подхватит следующая проверка по расписанию
+            if (!engine.isUpdating.compareAndSet(false, true))
+                return;
+
+            var key = new NameVersionTuple(engine.applicationSettings.getName(), engine.applicationSettings.getVersion());
+            try {
+                synchronized (engine.updateSyncObject) {
+                    if (engine.isClosed)
+                        return;
 
                     try {
                         engine.tryUpdate();
@@ -171,17 +279,43 @@ public class ConfigurationEngine implements AutoCloseable {
                         log.warn("Error on updating configuration store for app '{}' version '{}'. {}", key.getName(), key.getVersion(), e);
                     }
                 }
-            }, 0, 500, TimeUnit.MILLISECONDS);
+            } finally {
+                engine.isUpdating.set(false);
+            }
+
+            if (this.watcher != null && engine.applicationSettings.getChangeDetectionMode() == ChangeDetectionMode.WATCH && engines.get(key) == engine) {
+                // изменения в только что зарегистрированных директориях могли произойти до регистрации - перепроверим
+                if (this.watcher.watch(engine, engine.getWatchedDirectories()))
+                    engine.changeDetected = true;
+            }
+        }
+
+        /**
+         * Обработчик изменений в наблюдаемых директориях - проверяем изменения не дожидаясь очередного опроса
+         */
+        private void onChangeDetected(@NotNull ConfigurationEngine engine) {
+            engine.changeDetected = true;
+            try {
+                this.backgroundWorker.execute(() -> update(engine));
+            } catch (RejectedExecutionException e) {
+                log.trace("Background worker is shut down, change will be ignored");
+            }
         }
 
         public ConfigurationEngine put(@NotNull ApplicationSettings applicationSettings, @NotNull File agentDiscoveryPath) throws ConfigurationEngineCreationException {
             var key = new NameVersionTuple(applicationSettings.getName(), applicationSettings.getVersion());
-            var instance = engines.computeIfAbsent(key, (__) -> new ConfigurationEngine(applicationSettings, agentDiscoveryPath));
+            var isCreated = new boolean[1];
+            var instance = engines.computeIfAbsent(key, (__) -> {
+                isCreated[0] = true;
+                return new ConfigurationEngine(applicationSettings, agentDiscoveryPath);
+            });
 
             // проверка на то, что instance создался новый (у старого будет другой applicationSettings)
             if (instance.applicationSettings != applicationSettings)
                 throw new ConfigurationEngineCreationException(String.format("Приложение с именем: [%s] и версией [%s] уже ранее зарегистрировано", key.getName(), key.getVersion()));
 
+            if (isCreated[0])
+                schedule(instance);
             return instance;
         }
 
@@ -190,11 +324,22 @@ public class ConfigurationEngine implements AutoCloseable {
                 return false;
 
             var key = new NameVersionTuple(applicationSettings.getName(), applicationSettings.getVersion());
-            return engines.remove(key) != null;
+            var engine = engines.remove(key);
+            if (engine == null)
+                return false;
+
+            var updateSchedule = engine.updateSchedule;
+            if (updateSchedule != null)
+                updateSchedule.cancel(false);
+            if (this.watcher != null)
+                this.watcher.unwatch(engine);
+            return true;
         }
 
         public void shutdown() {
             this.backgroundWorker.shutdown();
+            if (this.watcher != null)
+                this.watcher.close();
             this.engines.clear();
         }
 
@@ -0,0 +1,178 @@
+package sharedconfig.core;
+
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import sharedconfig.core.model.appinv.declarations.ApplicationInvDeclaration;
+import sharedconfig.core.model.appinv.declarations.BlockDeclaration;
+import sharedconfig.core.model.appinv.declarations.VariableDeclaration;
+import sharedconfig.helpers.StringHelper;
+import sharedconfig.utils.tuples.NameHashTuple;
+import sharedconfig.utils.tuples.StrictNameVersionTuple;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Скомпилированная инвентаризация: слоты объявлений, в которые записывается значение переменной prepared.vars.xml.
+ * Для ключей, которые агент формирует по объявлениям инвентаризации, слоты вычисляются при построении индекса,
+ * остальные ключи разрешаются по инвентаризации при первом обращении и запоминаются
+ */
+@Log4j2
+/* package */ class ConfigurationInventoryIndex {
+    /** ограничение на количество запоминаемых ключей, не объявленных в инвентаризации */
+    private static final int MAX_UNKNOWN_KEYS = 10_000;
+    private static final int[] noSlots = new int[0];
+
+    private final @NotNull ApplicationInvDeclaration inventory;
+    private final @NotNull ConcurrentHashMap<Key, int[]> slots = new ConcurrentHashMap<>();
+    private final @NotNull AtomicInteger unknownKeyCount = new AtomicInteger();
+
+    private ConfigurationInventoryIndex(@NotNull ApplicationInvDeclaration inventory) {
+        this.inventory = inventory;
+    }
+
+    public static @NotNull ConfigurationInventoryIndex build(@NotNull ApplicationInvDeclaration inventory) {
+        var index = new ConfigurationInventoryIndex(inventory);
+        for (var variable : inventory.getVariables().values()) {
+            index.compile(Key.of(variable.getName(), null, false, null, null));
+        }
+        for (var variable : inventory.getApplication().getVariables().values()) {
+            index.compile(Key.of(variable.getName(), variable.getHash(), true, null, null));
+        }
+        for (var block : inventory.getBlocks().values()) {
+            for (var variable : block.getVariables().values()) {
+                index.compile(Key.of(variable.getName(), variable.getHash(), false, block.getId().getName(), block.getId().getVersion()));
+                index.compile(Key.of(variable.getName(), variable.getHash(), false, block.getId().getName(), null));
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Слоты объявлений, соответствующих атрибутам переменной prepared.vars.xml
+     * @return слоты или пустой массив, если объявления не найдены
+     */
+    public @NotNull int[] resolve(@NotNull String varName, @Nullable String hash, @Nullable String appName,
+                                  @Nullable String blockName, @Nullable String blockVersion) {
+        var key = Key.of(varName, hash, !StringHelper.isNullOrEmpty(appName), blockName, blockVersion);
+        var result = slots.get(key);
+        if (result != null)
+            return result;
+
+        result = resolveDeclarations(key);
+        if (unknownKeyCount.get() < MAX_UNKNOWN_KEYS && slots.putIfAbsent(key, result) == null)
+            unknownKeyCount.incrementAndGet();
+        return result;
+    }
+
+    private void compile(@NotNull Key key) {
+        slots.computeIfAbsent(key, this::resolveDeclarations);
+    }
+
+    /**
+     * Разрешить ключ по инвентаризации: переменная без скоупа соответствует всем объявлениям с этим именем,
+     * иначе - объявлениям приложения, блоков и объявлению с тем же name-hash
+     */
+    private @NotNull int[] resolveDeclarations(@NotNull Key key) {
+        var declarations = new LinkedHashSet<VariableDeclaration>();
+        if (!key.hasApplication && key.blockName == null) {
+            declarations.addAll(inventory.getVariables().getByName(key.name));
+        } else {
+            if (key.hasApplication) {
+                var decl = inventory.getApplication().getVariables().get(key.name);
+                if (decl == null) {
+                    log.trace("Couldn't find application var declaration for variable {}", key.name);
+                } else {
+                    declarations.add(decl);
+                }
+            }
+            if (key.blockName != null) {
+                List<BlockDeclaration> targetBlocks;
+                if (key.blockVersion != null) {
+                    var block = inventory.getBlocks().get(new StrictNameVersionTuple(key.blockName, key.blockVersion));
+                    targetBlocks = block != null ? List.of(block) : Collections.emptyList();
+                } else {
+                    targetBlocks = inventory.getBlocks().getByName(key.blockName);
+                }
+                if (targetBlocks.isEmpty())
+                    log.trace("Couldn't find application block with name {}:{}", key.blockName, key.blockVersion);
+                for (var targetBlock : targetBlocks) {
+                    var decl = targetBlock.getVariables().get(key.name);
+                    if (decl == null) {
+                        log.trace("Couldn't find block var declaration for block {}:{}", key.blockName, key.blockVersion);
+                    } else {
+                        declarations.add(decl);
+                    }
+                }
+            }
+            if (key.hash != null) {
+                var decl = inventory.getVariables().get(new NameHashTuple(key.name, key.hash));
+                if (decl == null) {
+                    log.trace("Couldn't find variable declaration for variable {}:{}", key.name, key.hash);
+                } else {
+                    declarations.add(decl);
+                }
+            }
+        }
+
+        if (declarations.isEmpty())
+            return noSlots;
+        // одинаковые name-hash в приложении и блоках разделяют слот
+        return declarations.stream().mapToInt(VariableDeclaration::getSlot).distinct().toArray();
+    }
+
+    /**
+     * Атрибуты переменной prepared.vars.xml, от которых зависит разрешение объявлений.
+     * Пустые значения не отличаются от отсутствующих, хэш переменной без скоупа не учитывается
+     */
+    private static final class Key {
+        private final @NotNull String name;
+        private final @Nullable String hash;
+        private final boolean hasApplication;
+        private final @Nullable String blockName;
+        private final @Nullable String blockVersion;
+        private final int hashCode;
+
+        private Key(@NotNull String name, @Nullable String hash, boolean hasApplication, @Nullable String blockName, @Nullable String blockVersion) {
+            this.name = name;
+            this.hash = hash;
+            this.hasApplication = hasApplication;
+            this.blockName = blockName;
+            this.blockVersion = blockVersion;
+            this.hashCode = Objects.hash(name, hash, hasApplication, blockName, blockVersion);
+        }
+
+        private static @NotNull Key of(@NotNull String name, @Nullable String hash, boolean hasApplication, @Nullable String blockName, @Nullable String blockVersion) {
+            var normalizedBlockName = StringHelper.isNullOrEmpty(blockName) ? null : blockName;
+            var isScoped = hasApplication || normalizedBlockName != null;
+            return new Key(name,
+                    isScoped ? hash : null,
+                    hasApplication,
+                    normalizedBlockName,
+                    normalizedBlockName == null || StringHelper.isNullOrEmpty(blockVersion) ? null : blockVersion);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            var that = (Key) o;
+            return hashCode == that.hashCode
+                    && hasApplication == that.hasApplication
+                    && name.equals(that.name)
+                    && Objects.equals(hash, that.hash)
+                    && Objects.equals(blockName, that.blockName)
+                    && Objects.equals(blockVersion, that.blockVersion);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
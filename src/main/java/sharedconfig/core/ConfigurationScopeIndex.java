@@ -0,0 +1,156 @@
+package sharedconfig.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import sharedconfig.utils.tuples.NameVersionTuple;
+
+import java.util.*;
+
+/**
+ * Неизменяемые таблицы имя переменной -> значение для скоупа приложения и каждого блока.
+ * Значения changeset'а хранятся таблицей по слотам, таблицы скоупов - представления над ней
+ * через общую для всех changeset'ов раскладку {@link ConfigurationScopeLayout}
+ */
+/* package */ class ConfigurationScopeIndex {
+    private static final ConfigurationScopeIndex empty = new ConfigurationScopeIndex(ConfigurationScopeLayout.empty(), VariableTable.empty());
+
+    private final @NotNull ConfigurationScopeLayout layout;
+    /** значения переменных по слотам */
+    private final @NotNull VariableTable values;
+    private final @NotNull Map<String, String> applicationVariables;
+
+    private ConfigurationScopeIndex(@NotNull ConfigurationScopeLayout layout, @NotNull VariableTable values) {
+        this.layout = layout;
+        this.values = values;
+        this.applicationVariables = new ScopeVariables(layout.getApplicationScope(), values);
+    }
+
+    public static @NotNull ConfigurationScopeIndex empty() {
+        return empty;
+    }
+
+    public static @NotNull ConfigurationScopeIndex build(@NotNull ConfigurationScopeLayout layout, @NotNull VariableTable values) {
+        if (values.size() != layout.getSlotCount())
+            throw new IllegalArgumentException("values length doesn't match layout slot count");
+        return new ConfigurationScopeIndex(layout, values);
+    }
+
+    /**
+     * Переменные, видимые в скоупе приложения
+     */
+    public @NotNull Map<String, String> getApplicationVariables() {
+        return applicationVariables;
+    }
+
+    /**
+     * Переменные, видимые в скоупе блока
+     */
+    public @NotNull Map<String, String> getBlockVariables(@NotNull NameVersionTuple blockId) {
+        var scope = layout.getBlockScope(blockId);
+        return scope != null ? new ScopeVariables(scope, values) : Collections.emptyMap();
+    }
+
+    /**
+     * Неизменяемое представление скоупа над таблицей значений
+     */
+    /* package */ static class ScopeVariables extends AbstractMap<String, String> {
+        private final @NotNull ConfigurationScopeLayout.Scope scope;
+        private final @NotNull VariableTable values;
+        /** количество заданных переменных скоупа, -1 если еще не вычислялось */
+        private int size = -1;
+        private @Nullable Set<Entry<String, String>> entrySet;
+
+        private ScopeVariables(@NotNull ConfigurationScopeLayout.Scope scope, @NotNull VariableTable values) {
+            this.scope = scope;
+            this.values = values;
+        }
+
+        @Override
+        public String get(Object key) {
+            var index = scope.indexOf(key);
+            return index >= 0 ? scope.getValue(index, values) : null;
+        }
+
+        /**
+         * Значения переменных набора, имена разрешаются в слоты раскладки скоупа однократно
+         */
+        public @NotNull String[] getValues(@NotNull SharedConfigVariableNames names) {
+            var indexes = names.resolve(scope);
+            var result = new String[indexes.length];
+            for (int i = 0; i < indexes.length; ++i) {
+                if (indexes[i] >= 0)
+                    result[i] = scope.getValue(indexes[i], values);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            var result = size;
+            if (result < 0) {
+                result = 0;
+                for (int i = 0; i < scope.size(); ++i) {
+                    if (scope.getValue(i, values) != null)
+                        ++result;
+                }
+                size = result;
+            }
+            return result;
+        }
+
+        @Override
+        public @NotNull Set<Entry<String, String>> entrySet() {
+            var result = entrySet;
+            if (result == null) {
+                result = new AbstractSet<>() {
+                    @Override
+                    public @NotNull Iterator<Entry<String, String>> iterator() {
+                        return new EntryIterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return ScopeVariables.this.size();
+                    }
+                };
+                entrySet = result;
+            }
+            return result;
+        }
+
+        private class EntryIterator implements Iterator<Entry<String, String>> {
+            private int index = -1;
+            private @Nullable String nextValue;
+
+            private EntryIterator() {
+                advance();
+            }
+
+            private void advance() {
+                nextValue = null;
+                while (nextValue == null && ++index < scope.size()) {
+                    nextValue = scope.getValue(index, values);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return nextValue != null;
+            }
+
+            @Override
+            public Entry<String, String> next() {
+                if (nextValue == null)
+                    throw new NoSuchElementException();
+                var entry = new SimpleImmutableEntry<>(scope.getName(index), nextValue);
+                advance();
+                return entry;
+            }
+        }
+    }
+}
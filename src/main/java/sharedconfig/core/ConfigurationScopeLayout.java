@@ -0,0 +1,121 @@
+package sharedconfig.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import sharedconfig.core.model.appinv.declarations.ApplicationInvDeclaration;
+import sharedconfig.utils.tuples.NameVersionTuple;
+
+import java.util.*;
+
+/**
+ * Раскладка слотов переменных по скоупам приложения и блоков.
+ * Строится один раз для инвентаризации и разделяется всеми changeset'ами хранилища,
+ * сами changeset'ы хранят только таблицу значений по слотам
+ */
+/* package */ class ConfigurationScopeLayout {
+    private static final ConfigurationScopeLayout empty = new ConfigurationScopeLayout(0, Scope.empty, new HashMap<>(0));
+
+    private final int slotCount;
+    private final @NotNull Scope applicationScope;
+    private final @NotNull HashMap<NameVersionTuple, Scope> blockScopes;
+
+    private ConfigurationScopeLayout(int slotCount, @NotNull Scope applicationScope, @NotNull HashMap<NameVersionTuple, Scope> blockScopes) {
+        this.slotCount = slotCount;
+        this.applicationScope = applicationScope;
+        this.blockScopes = blockScopes;
+    }
+
+    public static @NotNull ConfigurationScopeLayout empty() {
+        return empty;
+    }
+
+    public static @NotNull ConfigurationScopeLayout build(@NotNull ApplicationInvDeclaration inventory) {
+        var applicationSlots = new LinkedHashMap<String, List<Integer>>();
+
+        // переменные уровня application имеют приоритет
+        for (var appVariable : inventory.getApplication().getVariables().values()) {
+            applicationSlots.computeIfAbsent(appVariable.getName(), x -> new ArrayList<>()).add(appVariable.getSlot());
+        }
+
+        // переменные блоков: в скоупе приложения используются, только если значение с тем же именем не задано раньше
+        var blockScopes = new HashMap<NameVersionTuple, Scope>();
+        for (var block : inventory.getBlocks().values()) {
+            var blockSlots = new LinkedHashMap<String, List<Integer>>();
+            for (var blockVariable : block.getVariables().values()) {
+                blockSlots.computeIfAbsent(blockVariable.getName(), x -> new ArrayList<>()).add(blockVariable.getSlot());
+                applicationSlots.computeIfAbsent(blockVariable.getName(), x -> new ArrayList<>()).add(blockVariable.getSlot());
+            }
+            blockScopes.put(block.getId(), new Scope(blockSlots));
+        }
+
+        return new ConfigurationScopeLayout(inventory.getSlotCount(), new Scope(applicationSlots), blockScopes);
+    }
+
+    /**
+     * Размер таблицы значений changeset'а
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    public @NotNull Scope getApplicationScope() {
+        return applicationScope;
+    }
+
+    public @Nullable Scope getBlockScope(@NotNull NameVersionTuple blockId) {
+        return blockScopes.get(blockId);
+    }
+
+    /**
+     * Имена переменных скоупа и слоты, из которых берется их значение в порядке приоритета
+     */
+    /* package */ static class Scope {
+        private static final Scope empty = new Scope(new LinkedHashMap<>(0));
+
+        private final @NotNull String[] names;
+        private final @NotNull int[][] slots;
+        private final @NotNull HashMap<String, Integer> indexes;
+
+        private Scope(@NotNull LinkedHashMap<String, List<Integer>> slotsByName) {
+            this.names = new String[slotsByName.size()];
+            this.slots = new int[slotsByName.size()][];
+            this.indexes = new HashMap<>(slotsByName.size() * 2);
+
+            var index = 0;
+            for (var entry : slotsByName.entrySet()) {
+                names[index] = entry.getKey();
+                slots[index] = entry.getValue().stream().mapToInt(Integer::intValue).toArray();
+                indexes.put(entry.getKey(), index);
+                ++index;
+            }
+        }
+
+        public int size() {
+            return names.length;
+        }
+
+        public @NotNull String getName(int index) {
+            return names[index];
+        }
+
+        /**
+         * Порядковый номер переменной в скоупе, -1 если переменная в скоупе не объявлена
+         */
+        public int indexOf(@Nullable Object name) {
+            var index = indexes.get(name);
+            return index != null ? index : -1;
+        }
+
+        /**
+         * Значение переменной скоупа - первое заданное значение из ее слотов
+         */
+        public @Nullable String getValue(int index, @NotNull VariableTable values) {
+            for (var slot : slots[index]) {
+                var value = values.get(slot);
+                if (value != null)
+                    return value;
+            }
+            return null;
+        }
+    }
+}
@@ -7,12 +7,13 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.w3c.dom.Element;
 import sharedconfig.core.exceptions.ApplicationException;
+import sharedconfig.core.interfaces.ISharedConfigMetrics;
 import sharedconfig.core.model.appinv.declarations.*;
 import sharedconfig.helpers.FileHelper;
-import sharedconfig.helpers.HashHelper;
 import sharedconfig.helpers.StringHelper;
 import sharedconfig.helpers.XmlHelper;
 import sharedconfig.utils.*;
+import sharedconfig.utils.collections.StringPool;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -20,7 +21,13 @@ import java.nio.file.Files;
 import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Инкапсулирует логику работы с хранилищем changeset'ов
@@ -35,49 +42,146 @@ import java.util.stream.Collectors;
     @Getter
     private final @NotNull ApplicationInvDeclaration applicationInvDeclaration;
 
+    /** раскладка слотов переменных по скоупам, общая для всех changeset'ов */
+    @Getter
+    private final @NotNull ConfigurationScopeLayout scopeLayout;
+
+    /** слоты объявлений для атрибутов переменных prepared.vars.xml */
+    @Getter
+    private final @NotNull ConfigurationInventoryIndex inventoryIndex;
+
+    /** пул значений переменных, одинаковые значения разных changeset'ов разделяют один экземпляр строки */
+    @Getter
+    private final @NotNull StringPool valuePool = new StringPool();
+
+    /** двоичный кэш разобранных prepared.vars.xml, null если кэш отключен в настройках */
+    @Getter
+    private final @Nullable PreparedVarsCache varsCache;
+
     /** элементы конфигурации в необработанном виде, ключ - путь */
     private final TreeMap<String, ConfigurationStoreItem> rawStoreItems = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
-    /** элементы конфигурации в обработанном виде */
-    private final HashMap<Long, ConfigurationVersion> preparedVersions = new HashMap<>();
-    /** список актульных changeset'ов
-    /* package */ @NotNull SortedSet<Long> actualChangesetIds = new TreeSet<>();
-    /** текущий максимальный id changeset'ов */
-    /* package */ @Nullable Long maxChangesetId = null;
+    /** состояние хранилища, доступное читающим потокам */
+    private volatile @NotNull ConfigurationStoreState state = ConfigurationStoreState.empty();
 
 
-    /** дата изменения последнего загруженного prepared.xml */
-    private Long preparedFileLastModified;
-    /** хэш последнего загруженного prepared.xml */
-    private Long preparedFileLastHash;
-    /** текущая версия хранилища */
-    @Getter private long version = 0;
+    /** отпечаток последнего загруженного prepared.xml */
+    private @Nullable FileFingerprint preparedFileFingerprint;
+    /** элементы последнего загруженного prepared.xml, ключ - id changeset'а */
+    private @NotNull Map<Long, PreparedItem> preparedItems = Collections.emptyMap();
+    /** changeset'ы, которые не удалось загрузить, повторяем попытку при следующем изменении prepared.xml */
+    private @NotNull Set<Long> failedChangesets = Collections.emptySet();
+    /** момент ближайшего истечения срока хранения удаленного changeset'а, Long.MAX_VALUE если таких нет */
+    private long nextDeprecatedExpiration = Long.MAX_VALUE;
 
     private static final Version defaultVersion = new Version(0, 0, 0);
 
+    /** номера атрибутов элемента changeset'а в prepared.xml */
+    private static final int CHANGESET_ID = 0;
+    private static final int CHANGESET_STATUS = 1;
+    private static final int CHANGESET_SOURCE = 2;
+    private static final int CHANGESET_DIRECTORY = 3;
+    private static final int CHANGESET_TEMPLATE_DIRECTORY = 4;
+
+    /**
+     * Общие для всех хранилищ потоки параллельной загрузки источников, количество одновременных задач ограничивается
+     * настройками приложения, а количество потоков - числом процессоров, простаивающие потоки завершаются
+     */
+    private static final ExecutorService storeItemLoader = createStoreItemLoader();
+
     private ConfigurationStore(ApplicationContext applicationContext,
                                File preparedXmlFile,
                                ApplicationInvDeclaration applicationInvDeclaration) {
         this.applicationContext = Objects.requireNonNull(applicationContext);
         this.preparedXmlFile = Objects.requireNonNull(preparedXmlFile);
         this.applicationInvDeclaration = Objects.requireNonNull(applicationInvDeclaration);
+        this.scopeLayout = ConfigurationScopeLayout.build(applicationInvDeclaration);
+        this.inventoryIndex = ConfigurationInventoryIndex.build(applicationInvDeclaration);
+        this.varsCache = applicationContext.getSettings().isPreparedVarsCacheEnabled()
+                ? PreparedVarsCache.create(applicationContext.getStorageDirectoryInfo().toPath(), applicationInvDeclaration)
+                : null;
     }
 
     /**
      * Обновляем состояние хранилища
      */
     /* package */ void refresh() {
+        var metrics = this.applicationContext.getSettings().getMetrics();
+        var prevVersion = this.state.getVersion();
         try {
+            var startTime = System.nanoTime();
             var isLoaded = this.loadPreparedXml();
-            if (isLoaded)
+            if (isLoaded) {
+                metrics.recordDuration(ISharedConfigMetrics.PREPARED_LOAD_DURATION, System.nanoTime() - startTime);
                 log.trace("Configuration store was refreshed successfully");
+                log.debug("Variable value pool: {} hits, {} misses, hit rate {}",
+                        valuePool.getHits(), valuePool.getMisses(), String.format("%.3f", valuePool.getHitRate()));
+            }
         } catch (Exception ex) {
             log.warn("Couldn't load prepared.xml", ex);
         }
+
+        // срок хранения удаленных changeset'ов истекает и без изменений prepared.xml
+        var now = System.currentTimeMillis();
+        if (now >= this.nextDeprecatedExpiration)
+            this.state = applyRetention(this.state, now);
+
+        if (this.varsCache != null && this.state.getVersion() != prevVersion)
+            pruneVarsCache(this.varsCache, this.state);
+
+        recordStateMetrics(metrics, prevVersion);
+    }
+
+    /**
+     * Удалить из кэша записи источников, на которые не ссылается ни одна версия хранилища: источники удаленных из prepared.xml
+     * и вытесненных политикой хранения changeset'ов. Записи отложенных и вытесненных с возможностью перечитывания версий сохраняются
+     */
+    private static void pruneVarsCache(@NotNull PreparedVarsCache varsCache, @NotNull ConfigurationStoreState state) {
+        var storeItemIds = new HashSet<String>();
+        for (var version : state.getVersions().values()) {
+            storeItemIds.add(version.getStoreItem().getId());
+        }
+        varsCache.retainOnly(storeItemIds);
+    }
+
+    /**
+     * Опубликовать показатели текущего состояния хранилища
+     */
+    private void recordStateMetrics(@NotNull ISharedConfigMetrics metrics, long prevVersion) {
+        var state = this.state;
+        if (state.getVersion() != prevVersion)
+            metrics.setGauge(ISharedConfigMetrics.STORE_CHANGE_TIME, System.currentTimeMillis());
+        metrics.setGauge(ISharedConfigMetrics.STORE_VERSION, state.getVersion());
+        metrics.setGauge(ISharedConfigMetrics.ACTUAL_CHANGESETS, state.getActualChangesetIds().size());
+        metrics.setGauge(ISharedConfigMetrics.DEPRECATED_CHANGESETS, state.getVersions().size() - state.getActualChangesetIds().size());
+        metrics.setGauge(ISharedConfigMetrics.FAILED_CHANGESETS, this.failedChangesets.size());
+        metrics.setGauge(ISharedConfigMetrics.DECLARED_VARIABLES, this.scopeLayout.getSlotCount());
     }
 
 
-    /* package */ HashMap<Long, ConfigurationVersion> getVersions() {
-        return this.preparedVersions;
+    /**
+     * Получить текущее согласованное состояние хранилища
+     */
+    /* package */ @NotNull ConfigurationStoreState getState() {
+        return this.state;
+    }
+
+    /**
+     * Текущая версия хранилища
+     */
+    /* package */ long getVersion() {
+        return this.state.getVersion();
+    }
+
+    /**
+     * Получить директории, изменения в которых могут повлиять на состояние хранилища
+     */
+    /* package */ @NotNull List<Path> getWatchedDirectories() {
+        var result = new ArrayList<Path>(this.rawStoreItems.size() + 1);
+        result.add(this.preparedXmlFile.getAbsoluteFile().getParentFile().toPath());
+        for (var storeItemDirectory : this.rawStoreItems.keySet()) {
+            FileHelper.tryGetPath(storeItemDirectory).ifPresent(result::add);
+        }
+        return result;
     }
 
     /**
@@ -97,10 +201,11 @@ import java.util.stream.Collectors;
             }
 
             // prepared.xml не ьыл изменен
-            var prepareTime = preparedXmlFile.lastModified();
-            var prepareHash = HashHelper.getSimpleFileHash(preparedXmlFile);
-            if (this.preparedFileLastModified != null && this.preparedFileLastHash != null &&
-                prepareTime == this.preparedFileLastModified && prepareHash == this.preparedFileLastHash) {
+            var useContentHash = this.applicationContext.getSettings().getFileFingerprintMode() == FileFingerprintMode.CONTENT;
+            var prepareFingerprint = FileFingerprint.take(preparedXmlFile, this.preparedFileFingerprint, useContentHash);
+            if (!prepareFingerprint.isChangedSince(this.preparedFileFingerprint)) {
+                // содержимое то же - запоминаем новые метаданные, чтобы не пересчитывать хэш при каждой проверке
+                this.preparedFileFingerprint = prepareFingerprint;
                 log.trace("No changes detected for prepared.xml");
                 return false;
             }
@@ -136,31 +241,30 @@ import java.util.stream.Collectors;
             var changes = XmlHelper.getChildNodes(root);
             log.trace("Found {} changesets", changes.size());
 
-            var currentChangesetToPathMapping = new TreeMap<Long, String>();           // текущий маппинг changesetId -> changesetPath
-            var currentPathToChangesetsMapping = new HashMap<String, TreeSet<Long>>(); // текущий маппинг changesetPath -> changesetIds
+            var currentItems = new HashMap<Long, PreparedItem>(changes.size());  // текущие элементы prepared.xml
             var changesetsToRemove = new HashSet<Long>();                    // ченджсеты, помеченные на удаление
             var changesetsToUpdate = new HashSet<Long>();                    // ченджсеты, которые нужно обновить
+            var changesetsToCheck = new HashSet<Long>();                     // неизменившиеся ченджсеты, prepared.vars.xml которых мог измениться
 
             log.trace("Trying to load changesets from xml");
+            var changesetAttributes = new AttributeSlots("id", "status", "source", "directory", "templateDirectory");
             for(var changesetNode : changes) {
                 if (!StringHelper.equalsIgnoreCase(changesetNode.getNodeName(), Constants.Prepared.ChangesetTagName)) {
                     log.trace("Skipping changeset with tagname '{}', expected tagname '{}'", changesetNode.getNodeName(), Constants.Prepared.ChangesetTagName);
                     continue;
                 }
 
-                var id = XmlHelper.tryGetAttributeValue(changesetNode, a -> StringHelper.equalsIgnoreCase(a.getNodeName(), "id"))
-                        .flatMap(StringHelper::tryToLong).orElse(null);
-                var status = XmlHelper.tryGetAttributeValue(changesetNode, a -> StringHelper.equalsIgnoreCase(a.getNodeName(), "status")).orElse(null);
-                var source = XmlHelper.tryGetAttributeValue(changesetNode, a -> StringHelper.equalsIgnoreCase(a.getNodeName(), "source")).orElse(null);
-                var directoryValue = XmlHelper.tryGetAttributeValue(changesetNode, a -> StringHelper.equalsIgnoreCase(a.getNodeName(), "directory"))
-                        .flatMap(FileHelper::tryGetPath).orElse(null);
-                var templateDirectoryValue = XmlHelper.tryGetAttributeValue(changesetNode, a -> StringHelper.equalsIgnoreCase(a.getNodeName(), "templateDirectory"))
-                        .flatMap(FileHelper::tryGetPath).orElse(null);
+                XmlHelper.readAttributes(changesetNode, changesetAttributes);
+                var id = StringHelper.tryToLong(changesetAttributes.get(CHANGESET_ID)).orElse(null);
+                var status = changesetAttributes.get(CHANGESET_STATUS);
+                var source = changesetAttributes.get(CHANGESET_SOURCE);
+                var directory = changesetAttributes.get(CHANGESET_DIRECTORY);
+                var templateDirectory = changesetAttributes.get(CHANGESET_TEMPLATE_DIRECTORY);
 
-                log.trace("Processing changeset with attributes id='{}', status='{}', source='{}', directoryValue='{}', templateDirectoryValue='{}'",
-                        id, status, source, directoryValue, templateDirectoryValue);
+                log.trace("Processing changeset with attributes id='{}', status='{}', source='{}', directory='{}', templateDirectory='{}'",
+                        id, status, source, directory, templateDirectory);
 
-                if (id == null || status == null || source == null || directoryValue == null || templateDirectoryValue == null) {
+                if (id == null || status == null || source == null || directory == null || templateDirectory == null) {
                     log.trace("All attributes must have a value! Skipping..");
                     continue;
                 }
@@ -170,32 +274,15 @@ import java.util.stream.Collectors;
                     continue;
                 }
 
-                var preparedVarsFileInfo = Optional.of(directoryValue)
-                        .flatMap(v -> !v.isAbsolute() ? FileHelper.tryCombinePaths(this.preparedXmlFile.getParent(), v.toString()) : Optional.of(v))
-                        .flatMap(v -> FileHelper.tryCombinePaths(v.toString(), Constants.PreparedVars.FileName))
-                        .map(Path::toFile)
-                        .orElse(null);
-                if (preparedVarsFileInfo == null || !preparedVarsFileInfo.exists()) {
-                    log.trace("Couldn't build prepared.vars.xml path or file doesn't exist");
+                // элемент не изменился с прошлой загрузки - пути уже разрешены
+                var previousItem = this.preparedItems.get(id);
+                var item = previousItem != null && previousItem.hasSameAttributes(status, source, directory, templateDirectory)
+                        ? previousItem
+                        : resolvePreparedItem(id, status, source, directory, templateDirectory);
+                if (item == null)
                     continue;
-                }
-
-                var templateDirectoryInfo = Optional.of(templateDirectoryValue)
-                        .flatMap(v -> !v.isAbsolute() ? FileHelper.tryCombinePaths(this.preparedXmlFile.getParent(), v.toString()) : Optional.of(v))
-                        .map(Path::toFile)
-                        .orElse(null);
-                if (templateDirectoryInfo == null) {
-                    log.trace("Couldn't build templateDirectoryInfo path, templateDirectoryValue={}", templateDirectoryValue);
-                    continue;
-                }
-
-
-                // Регистрируем источник в коллекции известных источников
-                var storeItemGroupId = preparedVarsFileInfo.getParent();
-                this.rawStoreItems.computeIfAbsent(storeItemGroupId,
-                        (k) -> new ConfigurationStoreItem(k, this, preparedVarsFileInfo, templateDirectoryInfo));
-                currentChangesetToPathMapping.put(id, storeItemGroupId);
-                currentPathToChangesetsMapping.computeIfAbsent(storeItemGroupId, (__) -> new TreeSet<>()).add(id);
+                currentItems.put(id, item);
+                var isChanged = item != previousItem;
 
                 // проверяем стаатус
                 if (StringHelper.equalsIgnoreCase(status, "Error")) {
@@ -204,7 +291,8 @@ import java.util.stream.Collectors;
                 }
                 if (StringHelper.equalsIgnoreCase(status, "Removed")) {
                     log.trace("Changeset with Removed status. Skipping..");
-                    changesetsToRemove.add(id);
+                    if (isChanged)
+                        changesetsToRemove.add(id);
                     continue;
                 }
                 if (!StringHelper.equalsIgnoreCase(status, "Success")) {
@@ -212,37 +300,91 @@ import java.util.stream.Collectors;
                     continue;
                 }
 
+                // у неизменившихся ченджсетов только сверяем отпечаток prepared.vars.xml, кроме тех, что не удалось загрузить ранее
+                if (!isChanged && !this.failedChangesets.contains(id)) {
+                    log.trace("Chageset '{}' hasn't been changed", id);
+                    changesetsToCheck.add(id);
+                    continue;
+                }
+
                 changesetsToUpdate.add(id);
-                log.trace("Chageset '{}' with path '{}' was successfully queued to update", id, storeItemGroupId);
+                log.trace("Chageset '{}' with path '{}' was successfully queued to update", id, item.getStoreItemId());
             }
             log.trace("Finish loading changesets from xml");
             log.trace("Found {} changesets to update, {} chagesets to remove", changesetsToUpdate.size(), changesetsToRemove.size());
 
-            // обновляем все ченджсеты со статусом "Success"
+            // обновляем изменившиеся ченджсеты со статусом "Success"
             log.trace("Trying to update changesets");
-            var updatedChangesets = new HashSet<Long>(changesetsToUpdate.size());
-            var processedStoreItems = new HashSet<String>(changesetsToUpdate.size());
-            var failedChangesets = new HashMap<Long, Exception>();
-            for (var changesetToUpdate : changesetsToUpdate) {
-                log.trace("Trying to load/update changeset '{}'", changesetToUpdate);
-                var storeItemId = currentChangesetToPathMapping.get(changesetToUpdate); assert storeItemId != null;
-                if (processedStoreItems.contains(storeItemId)) {
-                    log.trace("Changeset's target store has been already loaded");
+            var sortedChangesetsToUpdate = new TreeSet<>(changesetsToUpdate);
+            // в отложенном режиме сразу загружается только новый последний changeset, остальные - при первом обращении
+            var deferredChangesets = new TreeSet<Long>();
+            if (this.applicationContext.getSettings().isLazyVersionLoading() && !sortedChangesetsToUpdate.isEmpty()) {
+                var latestChangeset = sortedChangesetsToUpdate.last();
+                var isLatest = this.state.getActualChangesetIds().stream()
+                        .filter(id -> !changesetsToRemove.contains(id))
+                        .allMatch(id -> id <= latestChangeset);
+                deferredChangesets.addAll(isLatest ? sortedChangesetsToUpdate.headSet(latestChangeset) : sortedChangesetsToUpdate);
+                sortedChangesetsToUpdate.removeAll(deferredChangesets);
+            }
+            var storeItemsToLoad = new ArrayList<String>(sortedChangesetsToUpdate.size());
+            for (var changesetToUpdate : sortedChangesetsToUpdate) {
+                var storeItemId = currentItems.get(changesetToUpdate).getStoreItemId();
+                if (!storeItemsToLoad.contains(storeItemId))
+                    storeItemsToLoad.add(storeItemId);
+            }
+            // источники загруженных неизменившихся ченджсетов проверяются по отпечатку и перечитываются, только если файл изменился.
+            // Отложенные и вытесненные версии читают prepared.vars.xml при обращении, их не проверяем
+            var checkedScopeIndexes = new HashMap<String, ConfigurationScopeIndex>();
+            for (var changesetToCheck : new TreeSet<>(changesetsToCheck)) {
+                var version = this.state.getVersions().get(changesetToCheck);
+                if (version == null || !version.isPreloaded())
                     continue;
-                }
-                var storeItem = rawStoreItems.get(storeItemId);
-                var storeItemUpdateResult = storeItem.loadOrUpdate();
-                if (storeItemUpdateResult.isLeft()) {
-                    log.warn("Updating failed. Error - {}", changesetToUpdate, storeItemUpdateResult.getLeft());
-                    failedChangesets.put(changesetToUpdate, storeItemUpdateResult.getLeft());
-                } else {
-                    log.trace("Updating was successfull");
+                var storeItemId = currentItems.get(changesetToCheck).getStoreItemId();
+                checkedScopeIndexes.putIfAbsent(storeItemId, rawStoreItems.get(storeItemId).getScopeIndex());
+                if (!storeItemsToLoad.contains(storeItemId))
+                    storeItemsToLoad.add(storeItemId);
+            }
+            var loadedStoreItems = loadStoreItems(storeItemsToLoad);
+
+            // результаты объединяем в порядке id, независимо от порядка завершения загрузки
+            var updatedChangesets = new HashSet<Long>(changesetsToUpdate.size());
+            var failedChangesets = new HashSet<Long>();
+            for (var changesetToUpdate : sortedChangesetsToUpdate) {
+                var storeItemId = currentItems.get(changesetToUpdate).getStoreItemId();
+                if (loadedStoreItems.get(storeItemId)) {
                     updatedChangesets.add(changesetToUpdate);
+                } else {
+                    failedChangesets.add(changesetToUpdate);
                 }
-                processedStoreItems.add(storeItemId);
+            }
+            updatedChangesets.addAll(deferredChangesets);
+            var reloadedCount = 0;
+            for (var changesetToCheck : changesetsToCheck) {
+                var storeItemId = currentItems.get(changesetToCheck).getStoreItemId();
+                if (!checkedScopeIndexes.containsKey(storeItemId))
+                    continue;
+                if (!loadedStoreItems.get(storeItemId)) {
+                    // прежняя версия остается в хранилище, загрузка повторится при следующем изменении prepared.xml
+                    failedChangesets.add(changesetToCheck);
+                } else if (rawStoreItems.get(storeItemId).getScopeIndex() != checkedScopeIndexes.get(storeItemId)) {
+                    updatedChangesets.add(changesetToCheck);
+                    ++reloadedCount;
+                }
+            }
+
+            if (updatedChangesets.isEmpty() && changesetsToRemove.isEmpty() && this.state.getVersion() > 0) {
+                log.trace("No changesets were changed");
+                this.preparedItems = currentItems;
+                this.failedChangesets = failedChangesets;
+                this.preparedFileFingerprint = prepareFingerprint;
+                return false;
             }
             log.trace("Finish updating configurations");
-            log.trace("Successfully updated {}/{} changesets", updatedChangesets.size(), changesetsToUpdate.size());
+            log.trace("Successfully updated {}/{} changesets, {} deferred, {} reloaded", updatedChangesets.size() - deferredChangesets.size() - reloadedCount,
+                    sortedChangesetsToUpdate.size(), deferredChangesets.size(), reloadedCount);
+
+            // новое состояние строим в стороне от читателей
+            var preparedVersions = new HashMap<>(this.state.getVersions());
 
             // помечаем удалененные ченджсеты как deprecated
             log.trace("Trying to deprecate removed changesets from active configuration");
@@ -250,7 +392,7 @@ import java.util.stream.Collectors;
                 var existingConfiguration = preparedVersions.get(changesetToRemove);
                 if (existingConfiguration != null) {
                     log.trace("Existing changeset {} made deprecated", changesetToRemove);
-                    existingConfiguration.setDeprecated(true);
+                    preparedVersions.put(changesetToRemove, existingConfiguration.deprecate());
                 }
             }
             log.trace("Finish deprecating removed changesets");
@@ -258,19 +400,18 @@ import java.util.stream.Collectors;
             // добавляем успешно загруженные ченджсеты в хранилище
             log.trace("Trying to add new changeset to active configuration");
             for (var updatedChangeset : updatedChangesets) {
-                var storeItemId = currentChangesetToPathMapping.get(updatedChangeset); assert storeItemId != null;
-                preparedVersions.put(updatedChangeset, new ConfigurationVersion(rawStoreItems.get(storeItemId), updatedChangeset));
+                var storeItem = rawStoreItems.get(currentItems.get(updatedChangeset).getStoreItemId());
+                preparedVersions.put(updatedChangeset, deferredChangesets.contains(updatedChangeset)
+                        ? ConfigurationVersion.lazy(storeItem, updatedChangeset)
+                        : new ConfigurationVersion(storeItem, updatedChangeset));
                 log.trace("Added changeset {}", updatedChangeset);
             }
 
-            this.actualChangesetIds = preparedVersions.values()
-                    .stream().filter(x -> !x.isDeprecated())
-                    .map(ConfigurationVersion::getVersion)
-                    .collect(Collectors.toCollection(TreeSet::new));
-            this.maxChangesetId = this.actualChangesetIds.size() > 0 ? this.actualChangesetIds.last() : null;
-            this.preparedFileLastHash = prepareHash;
-            this.preparedFileLastModified = prepareTime;
-            ++this.version;
+            this.preparedItems = currentItems;
+            this.failedChangesets = failedChangesets;
+            this.preparedFileFingerprint = prepareFingerprint;
+            var nextState = this.state.next(preparedVersions, updatedChangesets, changesetsToRemove);
+            this.state = applyRetention(nextState, System.currentTimeMillis());
 
             return true;
         } catch (Exception e) {
@@ -278,6 +419,196 @@ import java.util.stream.Collectors;
         }
     }
 
+    /**
+     * Применить политику хранения: удаленные changeset'ы вытесняются по истечении срока хранения,
+     * актуальные changeset'ы сверх лимита вытесняются начиная с самых старых
+     * @return состояние с учетом политики хранения или исходное состояние, если вытеснять нечего
+     */
+    private @NotNull ConfigurationStoreState applyRetention(@NotNull ConfigurationStoreState state, long now) {
+        var settings = this.applicationContext.getSettings();
+        var versions = state.getVersions();
+
+        var droppedChangesets = new HashSet<Long>();
+        var nextExpiration = Long.MAX_VALUE;
+        var deprecatedRetention = settings.getDeprecatedVersionRetention();
+        if (deprecatedRetention != null) {
+            var retentionMillis = deprecatedRetention.toMillis();
+            for (var version : versions.values()) {
+                if (!version.isDeprecated())
+                    continue;
+
+                var expiration = version.getDeprecatedAt() + retentionMillis;
+                if (expiration <= now) {
+                    droppedChangesets.add(version.getVersion());
+                } else {
+                    nextExpiration = Math.min(nextExpiration, expiration);
+                }
+            }
+        }
+        this.nextDeprecatedExpiration = nextExpiration;
+
+        var evictedChangesets = new ArrayList<Long>();
+        var retainedCount = settings.getRetainedVersionCount();
+        var actualChangesetIds = state.getActualChangesetIds();
+        if (retainedCount > 0 && actualChangesetIds.size() > retainedCount) {
+            // актуальные changeset'ы упорядочены по возрастанию id
+            var excessCount = actualChangesetIds.size() - retainedCount;
+            for (var changesetId : actualChangesetIds) {
+                if (excessCount-- == 0)
+                    break;
+                var version = versions.get(changesetId);
+                if (version != null && !version.isEvicted())
+                    evictedChangesets.add(changesetId);
+            }
+        }
+
+        if (droppedChangesets.isEmpty() && evictedChangesets.isEmpty())
+            return state;
+
+        var retainedVersions = new HashMap<>(versions);
+        for (var droppedChangeset : droppedChangesets) {
+            retainedVersions.remove(droppedChangeset);
+        }
+        for (var evictedChangeset : evictedChangesets) {
+            if (settings.isReloadEvictedVersions()) {
+                retainedVersions.put(evictedChangeset, retainedVersions.get(evictedChangeset).evict());
+            } else {
+                retainedVersions.remove(evictedChangeset);
+                droppedChangesets.add(evictedChangeset);
+            }
+        }
+        log.debug("Retention policy dropped {} and evicted {} changesets", droppedChangesets.size(), evictedChangesets.size());
+
+        // источники, данные которых не нужны ни одной удерживаемой версии, освобождаем
+        var usedStoreItems = new HashSet<ConfigurationStoreItem>();
+        for (var version : retainedVersions.values()) {
+            if (version.isPreloaded())
+                usedStoreItems.add(version.getStoreItem());
+        }
+        for (var storeItem : this.rawStoreItems.values()) {
+            if (storeItem.isLoaded() && !usedStoreItems.contains(storeItem))
+                storeItem.unload();
+        }
+
+        return state.next(retainedVersions, Collections.emptyList(), droppedChangesets);
+    }
+
+    /**
+     * Загрузить источники, различные источники загружаются параллельно если это разрешено настройками
+     * @return признак успешной загрузки для каждого источника
+     */
+    private @NotNull Map<String, Boolean> loadStoreItems(@NotNull List<String> storeItemIds) throws Exception {
+        var results = new boolean[storeItemIds.size()];
+        var nextIndex = new AtomicInteger();
+        var metrics = this.applicationContext.getSettings().getMetrics();
+        Runnable loader = () -> {
+            for (int i = nextIndex.getAndIncrement(); i < storeItemIds.size(); i = nextIndex.getAndIncrement()) {
+                var storeItemId = storeItemIds.get(i);
+                log.trace("Trying to load/update store item '{}'", storeItemId);
+                var startTime = System.nanoTime();
+                var storeItemUpdateResult = rawStoreItems.get(storeItemId).loadOrUpdate();
+                metrics.recordDuration(ISharedConfigMetrics.STORE_ITEM_LOAD_DURATION, System.nanoTime() - startTime);
+                if (storeItemUpdateResult.isLeft()) {
+                    metrics.increment(ISharedConfigMetrics.STORE_ITEM_LOAD_FAILURES, 1);
+                    log.warn("Updating failed for store item '{}'", storeItemId, storeItemUpdateResult.getLeft());
+                } else {
+                    log.trace("Updating was successfull");
+                }
+                results[i] = storeItemUpdateResult.isRight();
+            }
+        };
+
+        // текущий поток тоже загружает источники, поэтому дополнительных задач на одну меньше
+        var parallelism = Math.min(this.applicationContext.getSettings().getStoreLoadParallelism(), storeItemIds.size());
+        var tasks = new ArrayList<Future<?>>(Math.max(parallelism - 1, 0));
+        for (int i = 1; i < parallelism; ++i) {
+            tasks.add(storeItemLoader.submit(loader));
+        }
+        try {
+            loader.run();
+        } finally {
+            // задачи пишут в общий массив результатов, поэтому дожидаемся их и при ошибке в текущем потоке
+            awaitAll(tasks);
+        }
+
+        var result = new HashMap<String, Boolean>(storeItemIds.size());
+        for (int i = 0; i < storeItemIds.size(); ++i) {
+            result.put(storeItemIds.get(i), results[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Дождаться завершения всех задач, даже если часть из них завершилась с ошибкой
+     * @throws ExecutionException первая из ошибок задач, остальные добавляются в нее как suppressed
+     */
+    private static void awaitAll(@NotNull List<Future<?>> tasks) throws InterruptedException, ExecutionException {
+        ExecutionException failure = null;
+        for (var task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e.getCause());
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    private static @NotNull ExecutorService createStoreItemLoader() {
+        var threadCount = Runtime.getRuntime().availableProcessors();
+        var threadNumber = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            var thread = new Thread(runnable, "sharedconfig-store-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Разрешить пути элемента prepared.xml и зарегистрировать источник в коллекции известных источников
+     * @return элемент или null, если пути не удалось разрешить
+     */
+    private @Nullable PreparedItem resolvePreparedItem(long id, @NotNull String status, @NotNull String source,
+                                                       @NotNull String directory, @NotNull String templateDirectory) {
+        var directoryValue = FileHelper.tryGetPath(directory).orElse(null);
+        var templateDirectoryValue = FileHelper.tryGetPath(templateDirectory).orElse(null);
+        if (directoryValue == null || templateDirectoryValue == null) {
+            log.trace("Couldn't parse directory or templateDirectory path. Skipping..");
+            return null;
+        }
+
+        var preparedVarsFileInfo = Optional.of(directoryValue)
+                .flatMap(v -> !v.isAbsolute() ? FileHelper.tryCombinePaths(this.preparedXmlFile.getParent(), v.toString()) : Optional.of(v))
+                .flatMap(v -> FileHelper.tryCombinePaths(v.toString(), Constants.PreparedVars.FileName))
+                .map(Path::toFile)
+                .orElse(null);
+        if (preparedVarsFileInfo == null || !preparedVarsFileInfo.exists()) {
+            log.trace("Couldn't build prepared.vars.xml path or file doesn't exist");
+            return null;
+        }
+
+        var templateDirectoryInfo = Optional.of(templateDirectoryValue)
+                .flatMap(v -> !v.isAbsolute() ? FileHelper.tryCombinePaths(this.preparedXmlFile.getParent(), v.toString()) : Optional.of(v))
+                .map(Path::toFile)
+                .orElse(null);
+        if (templateDirectoryInfo == null) {
+            log.trace("Couldn't build templateDirectoryInfo path, templateDirectoryValue={}", templateDirectoryValue);
+            return null;
+        }
+
+        // Регистрируем источник в коллекции известных источников
+        var storeItemGroupId = preparedVarsFileInfo.getParent();
+        this.rawStoreItems.computeIfAbsent(storeItemGroupId,
+                (k) -> new ConfigurationStoreItem(k, this, preparedVarsFileInfo, templateDirectoryInfo));
+        return new PreparedItem(id, status, source, directory, templateDirectory, storeItemGroupId);
+    }
+
     public static ConfigurationStoreBuilder builder() {
         return new ConfigurationStoreBuilder();
     }
@@ -500,4 +831,34 @@ import java.util.stream.Collectors;
             return result;
         }
     }
+
+    /**
+     * Элемент prepared.xml с разрешенным путем источника
+     */
+    @Getter
+    private static class PreparedItem {
+        private final long id;
+        private final @NotNull String status;
+        private final @NotNull String source;
+        private final @NotNull String directory;
+        private final @NotNull String templateDirectory;
+        /** идентификатор источника в rawStoreItems */
+        private final @NotNull String storeItemId;
+
+        private PreparedItem(long id, @NotNull String status, @NotNull String source,
+                             @NotNull String directory, @NotNull String templateDirectory, @NotNull String storeItemId) {
+            this.id = id;
+            this.status = status;
+            this.source = source;
+            this.directory = directory;
+            this.templateDirectory = templateDirectory;
+            this.storeItemId = storeItemId;
+        }
+
+        public boolean hasSameAttributes(@NotNull String status, @NotNull String source,
+                                         @NotNull String directory, @NotNull String templateDirectory) {
+            return this.status.equals(status) && this.source.equals(source)
+                    && this.directory.equals(directory) && this.templateDirectory.equals(templateDirectory);
+        }
+    }
 }
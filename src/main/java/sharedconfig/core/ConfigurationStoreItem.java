@@ -5,18 +5,18 @@ import lombok.extern.log4j.Log4j2;
 import lombok.val;
 import org.jetbrains.annotations.NotNull;
 import sharedconfig.core.exceptions.ApplicationException;
-import sharedconfig.core.model.appinv.declarations.VariableDeclaration;
+import sharedconfig.core.interfaces.ISharedConfigMetrics;
 import sharedconfig.core.model.appinv.definitions.FileValue;
-import sharedconfig.core.model.appinv.definitions.VariableValue;
-import sharedconfig.helpers.HashHelper;
-import sharedconfig.helpers.StringHelper;
 import sharedconfig.helpers.XmlHelper;
+import sharedconfig.utils.AttributeSlots;
 import sharedconfig.utils.Either;
-import sharedconfig.utils.tuples.NameHashTuple;
+import sharedconfig.utils.FileFingerprint;
 import sharedconfig.utils.Version;
-import sharedconfig.utils.tuples.StrictNameVersionTuple;
 
+import javax.xml.stream.XMLStreamConstants;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.nio.file.Files;
 import java.util.*;
 
 /**
@@ -24,12 +24,20 @@ import java.util.*;
  */
 @Log4j2
 /* package */ class ConfigurationStoreItem {
+    private static final int VAR_NAME = 0;
+    private static final int VAR_HASH = 1;
+    private static final int VAR_APP_NAME = 2;
+    private static final int VAR_APP_VERSION = 3;
+    private static final int VAR_BLOCK_NAME = 4;
+    private static final int VAR_BLOCK_VERSION = 5;
+
     private final @Getter @NotNull String id;
     private final @NotNull ConfigurationStore store;
     private final @NotNull File preparedVarsFileInfo;
     private final @NotNull File templateDirectoryInfo;
-    private Long preparedVarsFileInfoHash;
-    @Getter private HashMap<NameHashTuple, VariableValue> variables;
+    private FileFingerprint preparedVarsFileFingerprint;
+    /** значения переменных по слотам и таблицы скоупов над ними, строятся при загрузке переменных */
+    @Getter private ConfigurationScopeIndex scopeIndex = ConfigurationScopeIndex.empty();
     @Getter private TreeMap<String, FileValue> templates;
 
     public ConfigurationStoreItem(@NotNull String id, @NotNull ConfigurationStore store, @NotNull File preparedVarsFileInfo, @NotNull File templateDirectoryInfo) {
@@ -56,115 +64,19 @@ import java.util.*;
      * Выполнить обновление данного хранилища
      */
     public Either<ApplicationException, Boolean> loadOrUpdate() {
-        var prevVariables = this.variables;
+        var prevScopeIndex = this.scopeIndex;
         var prevTemplates = this.templates;
-        var prevHash = this.preparedVarsFileInfoHash;
-
-        // если файл не изменился с момента последней загрузки то ничего не делаем
-        val fileHash = HashHelper.getSimpleFileHash(this.preparedVarsFileInfo);
-        if (prevHash != null && fileHash == prevHash) {
-            return Either.right(false);
-        }
-        this.preparedVarsFileInfoHash = fileHash;
+        var prevFingerprint = this.preparedVarsFileFingerprint;
 
         try {
-            val document = XmlHelper.tryLoadDocument(this.preparedVarsFileInfo.toPath()).getRightOrThrow();
-            val root = document.getDocumentElement();
-
-            if (root == null || !root.getNodeName().equalsIgnoreCase(Constants.PreparedVars.VariablesElement.TagName)) {
-                throw new Exception(String.format("Incorrect root tag, expected='%s'", Constants.PreparedVars.VariablesElement.TagName));
-            }
-
-            val formatVersion = XmlHelper.tryGetAttributeValue(root, "format").orElse("1.0");
-            val version = Version.tryParseVersion(formatVersion).orElse(null);
-            if (version == null) {
-                throw new Exception("Некорректное значение атрибута 'format'");
+            // если файл не изменился с момента последней загрузки то ничего не делаем
+            val fingerprint = takeFingerprint(prevFingerprint);
+            this.preparedVarsFileFingerprint = fingerprint;
+            if (!fingerprint.isChangedSince(prevFingerprint)) {
+                return Either.right(false);
             }
 
-            if (version.getMajor() != 1 && version.getMinor() != 0) {
-                throw new Exception(String.format("Версия формата файла: [%s] не поддерживается.", formatVersion));
-            }
-
-            val variables = new HashMap<NameHashTuple, VariableValue>();
-            var variablesNodeChilds = Optional.ofNullable(root)
-                    .map(XmlHelper::getChildNodes).orElseGet(ArrayList::new);
-            for(val variableNode : variablesNodeChilds) {
-                if (!variableNode.getNodeName().equalsIgnoreCase(Constants.PreparedVars.VariablesElement.VarElement.TagName))
-                    continue;
-
-                var varName  = XmlHelper.tryGetAttributeValueIgnoreCase(variableNode, "name").orElse(null);
-                var hash  = XmlHelper.tryGetAttributeValueIgnoreCase(variableNode, "hk").orElse(null);
-                var appName  = XmlHelper.tryGetAttributeValueIgnoreCase(variableNode, "a:n").orElse(null);
-                var appVersion  = XmlHelper.tryGetAttributeValueIgnoreCase(variableNode, "a:v").orElse(null);
-                var blockName  = XmlHelper.tryGetAttributeValueIgnoreCase(variableNode, "b:n").orElse(null);
-                var blockVersion  = XmlHelper.tryGetAttributeValueIgnoreCase(variableNode, "b:v").orElse(null);
-                var value = variableNode.getTextContent();
-
-                if (varName == null) {
-                    log.trace("Invalid 'name' attribute");
-                    continue;
-                }
-
-                log.trace("Trying to load variable '{}:{}'",  varName, hash);
-                Set<VariableDeclaration> declarations;
-                if (StringHelper.isNullOrEmpty(appName) && StringHelper.isNullOrEmpty(blockName)) {
-                    log.trace("Variable have global scope");
-                    declarations = new HashSet<>(store.getApplicationInvDeclaration().getVariables().getByName(varName));
-                } else {
-                    declarations = new HashSet<>();
-                    if (!StringHelper.isNullOrEmpty(appName)) {
-                        var decl = this.store.getApplicationInvDeclaration().getApplication().getVariables().get(varName);
-                        if (decl == null) {
-                            log.trace("Couldn't find application var declaration for app {}:{}", appName, appVersion);
-                        } else {
-                            log.trace("Found declaration inside scope {}:{}", appName, appVersion);
-                            declarations.add(decl);
-                        }
-                    }
-                    if (!StringHelper.isNullOrEmpty(blockName)) {
-                        var targetBlocks = !StringHelper.isNullOrEmpty(blockVersion)
-                                ? List.of(this.store.getApplicationInvDeclaration().getBlocks().get(new StrictNameVersionTuple(blockName, blockVersion)))
-                                : this.store.getApplicationInvDeclaration().getBlocks().getByName(blockName);
-                        if (targetBlocks.size() == 0) {
-                            log.trace("Couldn't find application block with name {}:{}", blockName, blockVersion);
-                        } else {
-                            for (var targetBlock : targetBlocks) {
-                                var decl = targetBlock.getVariables().get(varName);
-                                if (decl == null) {
-                                    log.trace("Couldn't find block var declaration for block {}:{}", blockName, blockVersion);
-                                } else {
-                                    log.trace("Found declaration inside scope {}:{}", targetBlock.getId().getName(), targetBlock.getId().getVersion());
-                                    declarations.add(decl);
-                                }
-                            }
-                        }
-                    }
-                    if (hash != null) {
-                        var varId = new NameHashTuple(varName, hash);
-                        var decl = store.getApplicationInvDeclaration().getVariables().get(varId);
-                        if (decl == null) {
-                            log.trace("Couldn't find variable declaration for variable {}:{}", varName, hash);
-                        } else {
-                            log.trace("Found plain name-hash declaration");
-                            declarations.add(decl);
-                        }
-                    }
-                }
-
-                if (declarations.size() == 0) {
-                    log.warn("No declarations found for variable. Skipping..");
-                    continue;
-                } else {
-                    log.trace("{} var declarations found", declarations.size());
-                }
-
-                var variable = new VariableValue(new ArrayList<>(declarations), value);
-                for (var decl : declarations) {
-                    variables.put(decl.getId(), variable);
-                }
-                log.trace("Variable '{}:{}' loaded successfully", varName, hash);
-            }
-            this.variables = variables;
+            this.scopeIndex = readScopeIndex(fingerprint);
 
             /*
             val templates = new TreeMap<String, ConfigurationFileValue>(String.CASE_INSENSITIVE_ORDER);
@@ -204,15 +116,194 @@ import java.util.*;
 
             return Either.right(true);
         } catch (Exception e) {
-            this.variables = prevVariables;
+            this.scopeIndex = prevScopeIndex;
             this.templates = prevTemplates;
-            this.preparedVarsFileInfoHash = prevHash;
+            this.preparedVarsFileFingerprint = prevFingerprint;
+
+            return Either.left(new ApplicationException(e));
+        }
+    }
 
+    /**
+     * Прочитать переменные из prepared.vars.xml, не изменяя состояние элемента
+     */
+    public Either<ApplicationException, ConfigurationScopeIndex> tryReadScopeIndex() {
+        try {
+            return Either.right(readScopeIndex(takeFingerprint(null)));
+        } catch (Exception e) {
             return Either.left(new ApplicationException(e));
         }
     }
 
+    /**
+     * Освободить загруженные данные, при следующем обновлении элемент будет загружен заново
+     */
+    public void unload() {
+        this.scopeIndex = ConfigurationScopeIndex.empty();
+        this.templates = null;
+        this.preparedVarsFileFingerprint = null;
+    }
+
+    /**
+     * Прочитать переменные из кэша, если запись кэша соответствует отпечатку файла, иначе разобрать prepared.vars.xml
+     */
+    private @NotNull ConfigurationScopeIndex readScopeIndex(@NotNull FileFingerprint fingerprint) throws Exception {
+        val cache = this.store.getVarsCache();
+        var values = cache != null ? cache.tryRead(this.id, fingerprint, this.store.getValuePool()) : null;
+        if (cache != null)
+            getMetrics().increment(values != null ? ISharedConfigMetrics.VARS_CACHE_HITS : ISharedConfigMetrics.VARS_CACHE_MISSES, 1);
+        if (values != null) {
+            log.trace("Variables of store item '{}' loaded from cache", this.id);
+            return buildScopeIndex(values);
+        }
+
+        values = this.store.getApplicationContext().getSettings().getPreparedVarsParser() == PreparedVarsParser.DOM
+                ? loadVariablesFromDocument()
+                : loadVariablesFromStream();
+
+        // файл мог измениться во время разбора - такие значения под старым отпечатком не сохраняем
+        if (cache != null && !takeFingerprint(fingerprint).isChangedSince(fingerprint))
+            cache.write(this.id, fingerprint, values);
+        return buildScopeIndex(values);
+    }
+
+    private @NotNull ConfigurationScopeIndex buildScopeIndex(@NotNull String[] values) {
+        var storage = this.store.getApplicationContext().getSettings().getVariableStorage();
+        return ConfigurationScopeIndex.build(this.store.getScopeLayout(), VariableTable.create(values, storage));
+    }
+
+    private @NotNull ISharedConfigMetrics getMetrics() {
+        return this.store.getApplicationContext().getSettings().getMetrics();
+    }
+
+    private @NotNull FileFingerprint takeFingerprint(FileFingerprint previous) throws Exception {
+        var useContentHash = this.store.getApplicationContext().getSettings().getFileFingerprintMode() == FileFingerprintMode.CONTENT;
+        return FileFingerprint.take(this.preparedVarsFileInfo, previous, useContentHash);
+    }
+
+    /**
+     * Загрузить переменные, построив DOM всего документа
+     */
+    private @NotNull String[] loadVariablesFromDocument() throws Exception {
+        val document = XmlHelper.tryLoadDocument(this.preparedVarsFileInfo.toPath()).getRightOrThrow();
+        val root = document.getDocumentElement();
+
+        if (root == null || !root.getNodeName().equalsIgnoreCase(Constants.PreparedVars.VariablesElement.TagName)) {
+            throw new Exception(String.format("Incorrect root tag, expected='%s'", Constants.PreparedVars.VariablesElement.TagName));
+        }
+
+        ensureFormatSupported(XmlHelper.tryGetAttributeValue(root, "format").orElse("1.0"));
+
+        val variables = new String[this.store.getScopeLayout().getSlotCount()];
+        val attributes = createVarAttributes();
+        var variablesNodeChilds = Optional.ofNullable(root)
+                .map(XmlHelper::getChildNodes).orElseGet(ArrayList::new);
+        for(val variableNode : variablesNodeChilds) {
+            if (!variableNode.getNodeName().equalsIgnoreCase(Constants.PreparedVars.VariablesElement.VarElement.TagName))
+                continue;
+
+            XmlHelper.readAttributes(variableNode, attributes);
+            var value = variableNode.getTextContent();
+
+            putVariable(variables, attributes.get(VAR_NAME), attributes.get(VAR_HASH), attributes.get(VAR_APP_NAME), attributes.get(VAR_APP_VERSION),
+                    attributes.get(VAR_BLOCK_NAME), attributes.get(VAR_BLOCK_VERSION), value);
+        }
+        return variables;
+    }
+
+    /**
+     * Загрузить переменные потоковым разбором, без построения DOM
+     */
+    private @NotNull String[] loadVariablesFromStream() throws Exception {
+        try (val input = new BufferedInputStream(Files.newInputStream(this.preparedVarsFileInfo.toPath()))) {
+            val reader = XmlHelper.createStreamReader(input);
+            try {
+                if (reader.nextTag() != XMLStreamConstants.START_ELEMENT || !reader.getLocalName().equalsIgnoreCase(Constants.PreparedVars.VariablesElement.TagName)) {
+                    throw new Exception(String.format("Incorrect root tag, expected='%s'", Constants.PreparedVars.VariablesElement.TagName));
+                }
+
+                ensureFormatSupported(Optional.ofNullable(reader.getAttributeValue(null, "format")).orElse("1.0"));
+
+                val variables = new String[this.store.getScopeLayout().getSlotCount()];
+                val attributes = createVarAttributes();
+                while (reader.hasNext()) {
+                    val event = reader.next();
+                    if (event == XMLStreamConstants.END_ELEMENT)
+                        break;
+                    if (event != XMLStreamConstants.START_ELEMENT)
+                        continue;
+
+                    if (!reader.getLocalName().equalsIgnoreCase(Constants.PreparedVars.VariablesElement.VarElement.TagName)) {
+                        XmlHelper.skipElement(reader);
+                        continue;
+                    }
+
+                    XmlHelper.readAttributes(reader, attributes);
+                    var value = XmlHelper.readElementText(reader);
+
+                    putVariable(variables, attributes.get(VAR_NAME), attributes.get(VAR_HASH), attributes.get(VAR_APP_NAME), attributes.get(VAR_APP_VERSION),
+                            attributes.get(VAR_BLOCK_NAME), attributes.get(VAR_BLOCK_VERSION), value);
+                }
+                return variables;
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Атрибуты элемента var, номера слотов - константы VAR_*
+     */
+    private static @NotNull AttributeSlots createVarAttributes() {
+        return new AttributeSlots("name", "hk",
+                Constants.ApplicationInv.VariablesElement.VarElement.ApplicationNameAttribute,
+                Constants.ApplicationInv.VariablesElement.VarElement.ApplicationVersionAttribute,
+                Constants.ApplicationInv.VariablesElement.VarElement.BlockNameAttribute,
+                Constants.ApplicationInv.VariablesElement.VarElement.BlockVersionAttribute);
+    }
+
+    private static void ensureFormatSupported(@NotNull String formatVersion) throws Exception {
+        val version = Version.tryParseVersion(formatVersion).orElse(null);
+        if (version == null) {
+            throw new Exception("Некорректное значение атрибута 'format'");
+        }
+
+        if (version.getMajor() != 1 && version.getMinor() != 0) {
+            throw new Exception(String.format("Версия формата файла: [%s] не поддерживается.", formatVersion));
+        }
+    }
+
+    /**
+     * Найти объявления переменной и записать ее значение в слоты объявлений
+     */
+    private void putVariable(@NotNull String[] variables,
+                             String varName, String hash, String appName, String appVersion, String blockName, String blockVersion,
+                             String value) {
+        if (varName == null) {
+            log.trace("Invalid 'name' attribute");
+            return;
+        }
+
+        log.trace("Trying to load variable '{}:{}'",  varName, hash);
+        var slots = store.getInventoryIndex().resolve(varName, hash, appName, blockName, blockVersion);
+        if (slots.length == 0) {
+            log.warn("No declarations found for variable. Skipping..");
+            return;
+        } else {
+            log.trace("{} var declarations found for scope {}:{} {}:{}", slots.length, appName, appVersion, blockName, blockVersion);
+        }
+
+        // значения вне heap не разделяются между changeset'ами, пул для них бесполезен
+        var canonicalValue = store.getApplicationContext().getSettings().getVariableStorage() == VariableStorage.HEAP
+                ? store.getValuePool().intern(value)
+                : value;
+        for (var slot : slots) {
+            variables[slot] = canonicalValue;
+        }
+        log.trace("Variable '{}:{}' loaded successfully", varName, hash);
+    }
+
     public boolean isLoaded() {
-        return this.preparedVarsFileInfoHash != null;
+        return this.preparedVarsFileFingerprint != null;
     }
 }
@@ -0,0 +1,57 @@
+package sharedconfig.core;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Неизменяемое состояние хранилища, доступное читающим потокам.
+ * Поток обновления строит новое состояние целиком и публикует его одной volatile-записью,
+ * поэтому читатель всегда видит согласованное поколение данных
+ */
+/* package */ class ConfigurationStoreState {
+    /** версия хранилища */
+    @Getter private final long version;
+    /** элементы конфигурации в обработанном виде */
+    @Getter private final @NotNull Map<Long, ConfigurationVersion> versions;
+    /** список актуальных changeset'ов */
+    @Getter private final @NotNull SortedSet<Long> actualChangesetIds;
+    /** текущий максимальный id changeset'ов */
+    @Getter private final @Nullable Long maxChangesetId;
+
+    private static final ConfigurationStoreState empty = new ConfigurationStoreState(0, Collections.emptyMap(), Collections.emptySortedSet(), null);
+
+    private ConfigurationStoreState(long version,
+                                    @NotNull Map<Long, ConfigurationVersion> versions,
+                                    @NotNull SortedSet<Long> actualChangesetIds,
+                                    @Nullable Long maxChangesetId) {
+        this.version = version;
+        this.versions = versions;
+        this.actualChangesetIds = actualChangesetIds;
+        this.maxChangesetId = maxChangesetId;
+    }
+
+    public static @NotNull ConfigurationStoreState empty() {
+        return empty;
+    }
+
+    /**
+     * Построить следующее поколение состояния, множество актуальных changeset'ов дополняется изменениями, а не строится заново
+     * @param versions все загруженные версии, коллекция не должна изменяться после вызова
+     * @param updatedChangesetIds загруженные или обновленные changeset'ы
+     * @param deprecatedChangesetIds changeset'ы, помеченные на удаление
+     */
+    public @NotNull ConfigurationStoreState next(@NotNull HashMap<Long, ConfigurationVersion> versions,
+                                                 @NotNull Collection<Long> updatedChangesetIds,
+                                                 @NotNull Collection<Long> deprecatedChangesetIds) {
+        var actualChangesetIds = new TreeSet<>(this.actualChangesetIds);
+        actualChangesetIds.removeAll(deprecatedChangesetIds);
+        actualChangesetIds.addAll(updatedChangesetIds);
+        return new ConfigurationStoreState(this.version + 1,
+                Collections.unmodifiableMap(versions),
+                Collections.unmodifiableSortedSet(actualChangesetIds),
+                actualChangesetIds.isEmpty() ? null : actualChangesetIds.last());
+    }
+}
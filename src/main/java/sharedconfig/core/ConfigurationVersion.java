@@ -1,32 +1,112 @@
 package sharedconfig.core;
 
 import lombok.Getter;
-import lombok.Setter;
+import lombok.extern.log4j.Log4j2;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 
 /**
- * Класс хранящий полную информации о конфигурационном changeset'e
+ * Класс хранящий полную информации о конфигурационном changeset'e.
+ * Неизменяемый - данные элемента хранилища фиксируются на момент создания версии.
+ * Данные отложенной версии читаются из prepared.vars.xml при первом обращении,
+ * данные вытесненной политикой хранения версии не удерживаются и перечитываются при каждом обращении
  */
+@Log4j2
 /* package */ class ConfigurationVersion implements Comparator<ConfigurationVersion>, Comparable<ConfigurationVersion> {
     /** Сырые конфигурационные данные (из prepared.vars.xml) */
     @Getter
     private final @NotNull ConfigurationStoreItem storeItem;
 
+    /** Значения переменных и таблицы переменных по скоупам на момент создания версии, null если версия отложенная или вытеснена */
+    private final @Nullable ConfigurationScopeIndex scopeIndex;
+
+    /** Загрузчик данных отложенной версии, null если данные загружены при создании версии или версия вытеснена */
+    private final @Nullable LazyScopeIndex lazyScopeIndex;
+
     /** Информация о версии */
     @Getter
-    private @NotNull Long version;
+    private final @NotNull Long version;
 
     /** Помечен ли changeset на удаление */
-    @Getter @Setter
-    private boolean isDeprecated;
+    @Getter
+    private final boolean isDeprecated;
+
+    /** Момент пометки на удаление (System.currentTimeMillis), 0 если версия актуальна */
+    @Getter
+    private final long deprecatedAt;
 
     public ConfigurationVersion(@NotNull ConfigurationStoreItem storeItem, @NotNull Long version) {
+        this(storeItem, storeItem.getScopeIndex(), null, version, false, 0);
+    }
+
+    private ConfigurationVersion(@NotNull ConfigurationStoreItem storeItem,
+                                 @Nullable ConfigurationScopeIndex scopeIndex,
+                                 @Nullable LazyScopeIndex lazyScopeIndex,
+                                 @NotNull Long version,
+                                 boolean isDeprecated,
+                                 long deprecatedAt) {
         this.storeItem = storeItem;
+        this.scopeIndex = scopeIndex;
+        this.lazyScopeIndex = lazyScopeIndex;
         this.version = version;
-        this.isDeprecated = false;
+        this.isDeprecated = isDeprecated;
+        this.deprecatedAt = deprecatedAt;
+    }
+
+    /**
+     * Создать отложенную версию, данные которой будут прочитаны из prepared.vars.xml при первом обращении
+     */
+    public static @NotNull ConfigurationVersion lazy(@NotNull ConfigurationStoreItem storeItem, @NotNull Long version) {
+        return new ConfigurationVersion(storeItem, null, new LazyScopeIndex(storeItem), version, false, 0);
+    }
+
+    /**
+     * Получить копию версии, помеченную на удаление
+     */
+    public @NotNull ConfigurationVersion deprecate() {
+        return this.isDeprecated ? this : new ConfigurationVersion(storeItem, scopeIndex, lazyScopeIndex, version, true, System.currentTimeMillis());
+    }
+
+    /**
+     * Получить копию версии без данных, данные будут перечитаны при обращении
+     */
+    public @NotNull ConfigurationVersion evict() {
+        return isEvicted() ? this : new ConfigurationVersion(storeItem, null, null, version, isDeprecated, deprecatedAt);
+    }
+
+    /**
+     * Вытеснена ли версия - данные не удерживаются и перечитываются при каждом обращении
+     */
+    public boolean isEvicted() {
+        return this.scopeIndex == null && this.lazyScopeIndex == null;
+    }
+
+    /**
+     * Загружены ли данные версии вместе с элементом хранилища при обновлении хранилища
+     */
+    public boolean isPreloaded() {
+        return this.scopeIndex != null;
+    }
+
+    /**
+     * Таблицы переменных по скоупам. Данные отложенной версии загружаются один раз при первом обращении,
+     * данные вытесненной версии перечитываются из prepared.vars.xml и не сохраняются
+     * @return таблицы или null, если данные не удалось прочитать
+     */
+    public @Nullable ConfigurationScopeIndex tryGetScopeIndex() {
+        if (this.scopeIndex != null)
+            return this.scopeIndex;
+        if (this.lazyScopeIndex != null)
+            return this.lazyScopeIndex.get(this.version);
+
+        var result = this.storeItem.tryReadScopeIndex();
+        if (result.isLeft()) {
+            log.warn("Couldn't reload evicted changeset {}", this.version, result.getLeft());
+            return null;
+        }
+        return result.getRight();
     }
 
     @Override
@@ -49,4 +129,37 @@ import java.util.*;
         return compare(this, other);
     }
 
+    /**
+     * Однократная загрузка данных отложенной версии, конкурентные обращения дожидаются одной загрузки.
+     * Неудачная загрузка не запоминается - следующее обращение попробует загрузить данные заново
+     */
+    private static class LazyScopeIndex {
+        private final @NotNull ConfigurationStoreItem storeItem;
+        private volatile @Nullable ConfigurationScopeIndex value;
+
+        private LazyScopeIndex(@NotNull ConfigurationStoreItem storeItem) {
+            this.storeItem = storeItem;
+        }
+
+        private @Nullable ConfigurationScopeIndex get(long version) {
+            var result = this.value;
+            if (result != null)
+                return result;
+
+            synchronized (this) {
+                result = this.value;
+                if (result == null) {
+                    log.trace("Loading deferred changeset {}", version);
+                    var loadResult = this.storeItem.tryReadScopeIndex();
+                    if (loadResult.isLeft()) {
+                        log.warn("Couldn't load deferred changeset {}", version, loadResult.getLeft());
+                        return null;
+                    }
+                    result = loadResult.getRight();
+                    this.value = result;
+                }
+                return result;
+            }
+        }
+    }
 }
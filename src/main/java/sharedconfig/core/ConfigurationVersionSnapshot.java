@@ -28,6 +28,13 @@ import java.util.Optional;
         return Optional.ofNullable(variables.get(id));
     }
 
+    @Override
+    public @NotNull String[] getValues(@NotNull SharedConfigVariableNames names) {
+        if (variables instanceof ConfigurationScopeIndex.ScopeVariables)
+            return ((ConfigurationScopeIndex.ScopeVariables) variables).getValues(names);
+        return IConfigurationVersionSnapshot.super.getValues(names);
+    }
+
 
     private static final ConfigurationVersionSnapshot empty = new ConfigurationVersionSnapshot(-100L, Collections.unmodifiableMap(new HashMap<>(0)));
     public static ConfigurationVersionSnapshot empty() {
@@ -0,0 +1,12 @@
+package sharedconfig.core;
+
+/**
+ * Способ определения изменений файлов хранилища (prepared.xml, prepared.vars.xml)
+ */
+public enum FileFingerprintMode {
+    /** Только по размеру и времени создания/изменения файла */
+    METADATA,
+    /** По метаданным и хэшу содержимого: перезапись тем же содержимым не вызывает повторный разбор,
+     *  перезапись с тем же размером в пределах точности времени изменения не пропускается */
+    CONTENT
+}
@@ -0,0 +1,14 @@
+package sharedconfig.core;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Сервис скоупа, значения которого строятся из текущего хранилища движка.
+ * Версии разных экземпляров хранилища несравнимы: при смене контекста приложения новое хранилище начинает нумерацию заново
+ */
+/* package */ interface IStoreBoundService {
+    /**
+     * Объект, идентифицирующий текущий экземпляр хранилища, null если хранилище еще не построено
+     */
+    @Nullable Object getStoreIdentity();
+}
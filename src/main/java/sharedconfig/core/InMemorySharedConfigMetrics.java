@@ -0,0 +1,159 @@
+package sharedconfig.core;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import sharedconfig.core.interfaces.ISharedConfigMetrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики, накапливаемые в памяти процесса. Подходит для диагностики и для периодической
+ * выгрузки в систему мониторинга: длительности собираются в гистограммы со степенями двойки в качестве границ
+ */
+public class InMemorySharedConfigMetrics implements ISharedConfigMetrics {
+    private final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordDuration(@NotNull String name, long nanos) {
+        histograms.computeIfAbsent(name, x -> new Histogram()).record(nanos);
+    }
+
+    @Override
+    public void increment(@NotNull String name, long delta) {
+        counters.computeIfAbsent(name, x -> new LongAdder()).add(delta);
+    }
+
+    @Override
+    public void setGauge(@NotNull String name, long value) {
+        gauges.computeIfAbsent(name, x -> new AtomicLong()).set(value);
+    }
+
+    /**
+     * Значение счетчика, 0 если счетчик не увеличивался
+     */
+    public long getCount(@NotNull String name) {
+        var counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * Текущее значение показателя, null если показатель не устанавливался
+     */
+    public @Nullable Long getGauge(@NotNull String name) {
+        var gauge = gauges.get(name);
+        return gauge != null ? gauge.get() : null;
+    }
+
+    /**
+     * Снимок гистограммы длительностей, null если длительность не регистрировалась
+     */
+    public @Nullable HistogramSnapshot getHistogram(@NotNull String name) {
+        var histogram = histograms.get(name);
+        return histogram != null ? histogram.snapshot() : null;
+    }
+
+    /**
+     * Доля попаданий для пары счетчиков попаданий и промахов, 0 если обращений не было
+     */
+    public double getHitRate(@NotNull String hitsName, @NotNull String missesName) {
+        var hits = getCount(hitsName);
+        var total = hits + getCount(missesName);
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Снимок всех счетчиков
+     */
+    public @NotNull Map<String, Long> getCounts() {
+        var result = new TreeMap<String, Long>();
+        counters.forEach((name, counter) -> result.put(name, counter.sum()));
+        return result;
+    }
+
+    /**
+     * Снимок всех показателей
+     */
+    public @NotNull Map<String, Long> getGauges() {
+        var result = new TreeMap<String, Long>();
+        gauges.forEach((name, gauge) -> result.put(name, gauge.get()));
+        return result;
+    }
+
+    /**
+     * Гистограмма длительностей, корзина i содержит значения из [2^(i-1), 2^i) нс
+     */
+    private static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        private void record(long nanos) {
+            var value = Math.max(nanos, 0);
+            buckets.incrementAndGet(Math.min(Long.SIZE - Long.numberOfLeadingZeros(value), Long.SIZE - 1));
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        private @NotNull HistogramSnapshot snapshot() {
+            var values = new long[buckets.length()];
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = buckets.get(i);
+            }
+            return new HistogramSnapshot(values, count.sum(), sum.sum(), max.get());
+        }
+    }
+
+    /**
+     * Снимок гистограммы длительностей, значения в наносекундах
+     */
+    public static class HistogramSnapshot {
+        private final long[] buckets;
+        @Getter private final long count;
+        @Getter private final long sum;
+        @Getter private final long max;
+
+        private HistogramSnapshot(long[] buckets, long count, long sum, long max) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Оценка перцентиля сверху - граница корзины, в которую попадает перцентиль, но не больше максимума
+         * @param quantile доля от 0 до 1
+         */
+        public long getPercentile(double quantile) {
+            var total = 0L;
+            for (var bucket : buckets) {
+                total += bucket;
+            }
+            if (total == 0)
+                return 0;
+
+            var rank = Math.max(1, (long) Math.ceil(quantile * total));
+            var seen = 0L;
+            for (int i = 0; i < buckets.length; ++i) {
+                seen += buckets[i];
+                if (seen >= rank)
+                    return i == 0 ? 0 : Math.min(max, i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+            return max;
+        }
+    }
+}
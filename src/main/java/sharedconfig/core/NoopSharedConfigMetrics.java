@@ -0,0 +1,26 @@
+package sharedconfig.core;
+
+import org.jetbrains.annotations.NotNull;
+import sharedconfig.core.interfaces.ISharedConfigMetrics;
+
+/**
+ * Метрики не собираются, используется по умолчанию
+ */
+public final class NoopSharedConfigMetrics implements ISharedConfigMetrics {
+    public static final NoopSharedConfigMetrics INSTANCE = new NoopSharedConfigMetrics();
+
+    private NoopSharedConfigMetrics() {
+    }
+
+    @Override
+    public void recordDuration(@NotNull String name, long nanos) {
+    }
+
+    @Override
+    public void increment(@NotNull String name, long delta) {
+    }
+
+    @Override
+    public void setGauge(@NotNull String name, long value) {
+    }
+}
@@ -0,0 +1,233 @@
+package sharedconfig.core;
+
+import lombok.extern.log4j.Log4j2;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import sharedconfig.core.model.appinv.declarations.ApplicationInvDeclaration;
+import sharedconfig.core.model.appinv.declarations.VariableDeclaration;
+import sharedconfig.utils.FileFingerprint;
+import sharedconfig.utils.collections.StringPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+/**
+ * Дисковый кэш разобранных prepared.vars.xml: значения переменных по слотам в компактном двоичном виде.
+ * Запись кэша привязана к отпечатку исходного файла и к раскладке слотов инвентаризации,
+ * при несовпадении любого из них или повреждении файла кэш игнорируется и prepared.vars.xml разбирается заново.
+ * <p>
+ * Формат: заголовок (сигнатура, версия формата, сигнатура раскладки, отпечаток файла, количество слотов),
+ * значения слотов (длина в байтах UTF-8 или -1 для отсутствующего значения, байты), CRC32C всего предшествующего содержимого
+ */
+@Log4j2
+/* package */ class PreparedVarsCache {
+    private static final int MAGIC = 0x53435643;
+    private static final int FORMAT_VERSION = 1;
+    private static final String DIRECTORY_NAME = ".vars-cache";
+
+    private final @NotNull Path directory;
+    /** хэш объявлений переменных в порядке слотов, значения другой раскладки не могут быть использованы */
+    private final long layoutSignature;
+    private final int slotCount;
+
+    private PreparedVarsCache(@NotNull Path directory, long layoutSignature, int slotCount) {
+        this.directory = directory;
+        this.layoutSignature = layoutSignature;
+        this.slotCount = slotCount;
+    }
+
+    /**
+     * @param storeDirectory директория хранилища приложения: записи разных приложений не должны попадать в одну директорию,
+     *                       так как {@link #retainOnly} удаляет все записи, неизвестные своему хранилищу
+     */
+    public static @NotNull PreparedVarsCache create(@NotNull Path storeDirectory, @NotNull ApplicationInvDeclaration inventory) {
+        var declarations = new VariableDeclaration[inventory.getSlotCount()];
+        for (var declaration : inventory.getVariables().values()) {
+            declarations[declaration.getSlot()] = declaration;
+        }
+
+        var crc = new CRC32C();
+        for (var declaration : declarations) {
+            crc.update(declaration.getName().getBytes(StandardCharsets.UTF_8));
+            crc.update(0);
+            crc.update(declaration.getHash().getBytes(StandardCharsets.UTF_8));
+            crc.update(0);
+        }
+        return new PreparedVarsCache(storeDirectory.resolve(DIRECTORY_NAME), crc.getValue(), declarations.length);
+    }
+
+    /**
+     * Прочитать значения источника из кэша
+     * @return значения по слотам или null, если записи нет, она устарела или повреждена
+     */
+    public @Nullable String[] tryRead(@NotNull String storeItemId, @NotNull FileFingerprint fingerprint, @NotNull StringPool valuePool) {
+        var file = getFile(storeItemId);
+        if (!Files.isRegularFile(file))
+            return null;
+
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // читаем в кучу, а не отображаем файл: отображение держит файл до сборки мусора и мешает его замене на Windows
+            var buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0)
+                    break;
+            }
+            buffer.flip();
+            var values = read(buffer, fingerprint, valuePool);
+            if (values == null)
+                log.trace("Cache entry '{}' is stale or corrupt", file);
+            return values;
+        } catch (IOException | RuntimeException e) {
+            log.trace("Couldn't read cache entry '{}'", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Сохранить значения источника в кэш, ошибки записи не влияют на загрузку хранилища
+     */
+    public void write(@NotNull String storeItemId, @NotNull FileFingerprint fingerprint, @NotNull String[] values) {
+        var file = getFile(storeItemId);
+        try {
+            Files.createDirectories(directory);
+            var tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+            try {
+                try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                    var buffer = serialize(fingerprint, values);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                try {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Couldn't write cache entry '{}'", file, e);
+        }
+    }
+
+    /**
+     * Удалить записи кэша всех источников, кроме перечисленных, ошибки удаления не влияют на работу хранилища
+     * @param storeItemIds источники, записи которых еще могут понадобиться
+     */
+    public void retainOnly(@NotNull Collection<String> storeItemIds) {
+        if (!Files.isDirectory(directory))
+            return;
+
+        var retainedFiles = new HashSet<Path>(storeItemIds.size());
+        for (var storeItemId : storeItemIds) {
+            retainedFiles.add(getFile(storeItemId));
+        }
+        try (var entries = Files.newDirectoryStream(directory, "*.bin")) {
+            for (var entry : entries) {
+                if (!retainedFiles.contains(entry)) {
+                    log.trace("Removing orphan cache entry '{}'", entry);
+                    Files.deleteIfExists(entry);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Couldn't remove orphan cache entries from '{}'", directory, e);
+        }
+    }
+
+    private @NotNull Path getFile(@NotNull String storeItemId) {
+        var crc = new CRC32C();
+        crc.update(storeItemId.getBytes(StandardCharsets.UTF_8));
+        return directory.resolve(String.format("%08x-%d.bin", crc.getValue(), storeItemId.length()));
+    }
+
+    private @Nullable String[] read(@NotNull ByteBuffer buffer, @NotNull FileFingerprint fingerprint, @NotNull StringPool valuePool) {
+        var length = buffer.limit();
+        if (length < Integer.BYTES)
+            return null;
+
+        var crc = new CRC32C();
+        crc.update(buffer.duplicate().limit(length - Integer.BYTES));
+        if ((int) crc.getValue() != buffer.getInt(length - Integer.BYTES))
+            return null;
+        buffer.limit(length - Integer.BYTES);
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || buffer.getLong() != layoutSignature)
+            return null;
+
+        var size = buffer.getLong();
+        var lastModified = buffer.getLong();
+        var metadataHash = buffer.getLong();
+        var hasContentHash = buffer.get() != 0;
+        var contentHashValue = buffer.getLong();
+        var contentHash = hasContentHash ? (Long) contentHashValue : null;
+        if (!matches(fingerprint, size, lastModified, metadataHash, contentHash))
+            return null;
+
+        if (buffer.getInt() != slotCount)
+            return null;
+
+        var values = new String[slotCount];
+        var bytes = new byte[256];
+        for (int slot = 0; slot < slotCount; ++slot) {
+            var valueLength = buffer.getInt();
+            if (valueLength < 0)
+                continue;
+            if (valueLength > bytes.length)
+                bytes = new byte[Math.max(valueLength, bytes.length * 2)];
+            buffer.get(bytes, 0, valueLength);
+            values[slot] = valuePool.intern(new String(bytes, 0, valueLength, StandardCharsets.UTF_8));
+        }
+        return buffer.hasRemaining() ? null : values;
+    }
+
+    /**
+     * Совпадает ли отпечаток записи кэша с текущим отпечатком файла.
+     * Если известен хэш содержимого - сравнивается содержимое, иначе метаданные
+     */
+    private static boolean matches(@NotNull FileFingerprint fingerprint, long size, long lastModified, long metadataHash, @Nullable Long contentHash) {
+        if (fingerprint.getSize() != size)
+            return false;
+        if (fingerprint.getContentHash() != null)
+            return Objects.equals(fingerprint.getContentHash(), contentHash);
+        return fingerprint.getMetadataHash() == metadataHash && fingerprint.getLastModified() == lastModified;
+    }
+
+    private @NotNull ByteBuffer serialize(@NotNull FileFingerprint fingerprint, @NotNull String[] values) {
+        var encoded = new byte[values.length][];
+        var length = 4 + 4 + 8 + 8 + 8 + 8 + 1 + 8 + 4 + 4;
+        for (int slot = 0; slot < values.length; ++slot) {
+            if (values[slot] != null) {
+                encoded[slot] = values[slot].getBytes(StandardCharsets.UTF_8);
+                length += encoded[slot].length;
+            }
+            length += 4;
+        }
+
+        var buffer = ByteBuffer.allocate(length);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(layoutSignature);
+        buffer.putLong(fingerprint.getSize()).putLong(fingerprint.getLastModified()).putLong(fingerprint.getMetadataHash());
+        var contentHash = fingerprint.getContentHash();
+        buffer.put((byte) (contentHash != null ? 1 : 0)).putLong(contentHash != null ? contentHash : 0);
+        buffer.putInt(values.length);
+        for (var value : encoded) {
+            if (value == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(value.length).put(value);
+            }
+        }
+
+        var crc = new CRC32C();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,11 @@
+package sharedconfig.core;
+
+/**
+ * Способ разбора файлов prepared.vars.xml
+ */
+public enum PreparedVarsParser {
+    /** Загрузка всего документа в DOM */
+    DOM,
+    /** Потоковый разбор через XMLStreamReader без построения DOM */
+    STAX
+}
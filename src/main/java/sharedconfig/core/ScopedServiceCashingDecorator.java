@@ -1,22 +1,41 @@
 package sharedconfig.core;
 
-import lombok.RequiredArgsConstructor;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import sharedconfig.core.exceptions.StoreNotLoadedException;
-import sharedconfig.core.interfaces.IScopedConfigurationService;
-import sharedconfig.core.interfaces.ISharedConfigMonitor;
+import sharedconfig.core.interfaces.IObservableConfigurationService;
+import sharedconfig.core.interfaces.IObservableSharedConfigMonitor;
+import sharedconfig.core.interfaces.ISharedConfigMetrics;
+import sharedconfig.core.interfaces.ISharedConfigSubscription;
 import sharedconfig.utils.tuples.NameVersionTuple;
 
-import java.util.HashMap;
 import java.util.Optional;
 import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
-@RequiredArgsConstructor
+/**
+ * Кэширующий декоратор скоупа конфигурации, безопасный для конкурентного чтения.
+ * Кэш привязан к экземпляру и версии хранилища и публикуется целиком через {@link AtomicReference},
+ * каждое значение строится ровно одним потоком, остальные потоки дожидаются результата
+ */
 /* package */ class ScopedServiceCashingDecorator<Configuration>
-        implements IScopedConfigurationService<Configuration> {
-    private final @NotNull ConfigurationEngine engine;
-    private final @NotNull IScopedConfigurationService<Configuration> decoratee;
+        implements IObservableConfigurationService<Configuration> {
+    private final @NotNull IObservableConfigurationService<Configuration> decoratee;
+    private final @NotNull ISharedConfigMetrics metrics;
+    private final @NotNull AtomicReference<CacheGeneration<Configuration>> cache = new AtomicReference<>();
+
+    public ScopedServiceCashingDecorator(@NotNull IObservableConfigurationService<Configuration> decoratee) {
+        this(decoratee, NoopSharedConfigMetrics.INSTANCE);
+    }
+
+    public ScopedServiceCashingDecorator(@NotNull IObservableConfigurationService<Configuration> decoratee, @NotNull ISharedConfigMetrics metrics) {
+        this.decoratee = decoratee;
+        this.metrics = metrics;
+    }
 
     @Override
     public @NotNull NameVersionTuple getScopeId() throws StoreNotLoadedException {
@@ -34,40 +53,144 @@ import java.util.SortedSet;
     }
 
     @Override
-    public @NotNull ISharedConfigMonitor<Configuration> getObservedVersion() {
+    public @NotNull IObservableSharedConfigMonitor<Configuration> getObservedVersion() {
         return decoratee.getObservedVersion();
     }
 
-    private Configuration getLastVersionCache;
-    private long getLastVersionVersion = -1;
+    @Override
+    public @NotNull ISharedConfigSubscription onChange(@NotNull Consumer<Configuration> listener) {
+        return decoratee.onChange(listener);
+    }
+
     @Override
     public Configuration getLastVersion() throws StoreNotLoadedException {
-        var store = engine.store;
-        if (store == null)
+        // хранилище читается раньше версии: версия не может относиться к более старому хранилищу, чем ключ кэша
+        var storeIdentity = getStoreIdentity();
+        var storeVersion = decoratee.getLatestVersionId();
+        if (storeVersion == null)
             return decoratee.getLastVersion();
 
-        if (store.getVersion() != getLastVersionVersion) {
-            getLastVersionVersion = store.getVersion();
-            getLastVersionCache = decoratee.getLastVersion();
+        var generation = getGeneration(storeIdentity, storeVersion);
+        var task = generation.lastVersion.get();
+        if (task == null) {
+            var newTask = new FutureTask<>(decoratee::getLastVersion);
+            task = generation.lastVersion.compareAndExchange(null, newTask);
+            if (task == null)
+                task = newTask;
+        }
+        recordAccess(task);
+
+        try {
+            return awaitTask(task);
+        } catch (StoreNotLoadedException | RuntimeException | Error e) {
+            // неудачный результат не кэшируем - следующий вызов попробует построить значение заново
+            generation.lastVersion.compareAndSet(task, null);
+            throw e;
         }
-        return getLastVersionCache;
     }
 
-    private final HashMap<Long, Optional<Configuration>> getVersionCache = new HashMap<>();
-    private long getVersionCacheVersion = -1;
     @Override
     public Optional<Configuration> getVersion(@NotNull Long versionId) throws StoreNotLoadedException {
-        var store = engine.store;
-        if (store == null)
+        var storeIdentity = getStoreIdentity();
+        var storeVersion = decoratee.getLatestVersionId();
+        if (storeVersion == null)
             return decoratee.getVersion(versionId);
 
-        if (store.getVersion() != getVersionCacheVersion) {
-            getVersionCacheVersion = store.getVersion();
-            getVersionCache.clear();
-            getVersionCache.put(versionId, decoratee.getVersion(versionId));
-        } else if (!getVersionCache.containsKey(versionId)) {
-            getVersionCache.put(versionId, decoratee.getVersion(versionId));
+        var generation = getGeneration(storeIdentity, storeVersion);
+        var task = generation.versions.get(versionId);
+        if (task == null) {
+            var newTask = new FutureTask<>(() -> decoratee.getVersion(versionId));
+            task = generation.versions.putIfAbsent(versionId, newTask);
+            if (task == null)
+                task = newTask;
+        }
+        recordAccess(task);
+
+        try {
+            return awaitTask(task);
+        } catch (StoreNotLoadedException | RuntimeException | Error e) {
+            generation.versions.remove(versionId, task);
+            throw e;
+        }
+    }
+
+    /**
+     * Экземпляр хранилища декорируемого сервиса, null если сервис не привязан к хранилищу движка
+     */
+    private @Nullable Object getStoreIdentity() {
+        return decoratee instanceof IStoreBoundService ? ((IStoreBoundService) decoratee).getStoreIdentity() : null;
+    }
+
+    /**
+     * Получить кэш для указанной версии хранилища, при смене хранилища или переходе на более новую версию кэш заменяется целиком.
+     * Поток, прочитавший устаревшую версию того же хранилища, получает отдельный кэш и не вытесняет кэш новой версии
+     */
+    private @NotNull CacheGeneration<Configuration> getGeneration(@Nullable Object storeIdentity, long storeVersion) {
+        while (true) {
+            var current = cache.get();
+            if (current != null && current.storeIdentity == storeIdentity) {
+                if (current.storeVersion == storeVersion)
+                    return current;
+                if (current.storeVersion > storeVersion)
+                    return new CacheGeneration<>(storeIdentity, storeVersion);
+            }
+
+            var next = new CacheGeneration<Configuration>(storeIdentity, storeVersion);
+            if (cache.compareAndSet(current, next))
+                return next;
+        }
+    }
+
+    /**
+     * Попадание - значение уже построено к моменту обращения, иначе промах
+     */
+    private void recordAccess(@NotNull FutureTask<?> task) {
+        metrics.increment(task.isDone() ? ISharedConfigMetrics.SCOPE_CACHE_HITS : ISharedConfigMetrics.SCOPE_CACHE_MISSES, 1);
+    }
+
+    /**
+     * Выполнить задачу, если ее еще никто не выполнил, и дождаться результата
+     */
+    private static <T> T awaitTask(@NotNull FutureTask<T> task) throws StoreNotLoadedException {
+        // FutureTask гарантирует, что задачу выполнит только первый вызвавший run поток
+        task.run();
+
+        var interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    var cause = e.getCause();
+                    if (cause instanceof StoreNotLoadedException)
+                        throw (StoreNotLoadedException) cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    if (cause instanceof Error)
+                        throw (Error) cause;
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Кэш значений, построенных для одной версии хранилища
+     */
+    private static final class CacheGeneration<Configuration> {
+        private final @Nullable Object storeIdentity;
+        private final long storeVersion;
+        private final AtomicReference<FutureTask<Configuration>> lastVersion = new AtomicReference<>();
+        private final ConcurrentHashMap<Long, FutureTask<Optional<Configuration>>> versions = new ConcurrentHashMap<>();
+
+        private CacheGeneration(@Nullable Object storeIdentity, long storeVersion) {
+            this.storeIdentity = storeIdentity;
+            this.storeVersion = storeVersion;
         }
-        return getVersionCache.get(versionId);
     }
 }
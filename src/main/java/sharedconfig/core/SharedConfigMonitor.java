@@ -2,13 +2,16 @@ package sharedconfig.core;
 
 import lombok.SneakyThrows;
 import org.jetbrains.annotations.NotNull;
-import sharedconfig.core.interfaces.IScopedConfigurationService;
-import sharedconfig.core.interfaces.ISharedConfigMonitor;
+import sharedconfig.core.interfaces.IObservableConfigurationService;
+import sharedconfig.core.interfaces.IObservableSharedConfigMonitor;
+import sharedconfig.core.interfaces.ISharedConfigSubscription;
 
-/* package */ class SharedConfigMonitor<T> implements ISharedConfigMonitor<T> {
-    private final @NotNull IScopedConfigurationService<T> service;
+import java.util.function.Consumer;
 
-    public SharedConfigMonitor(@NotNull IScopedConfigurationService<T> service) {
+/* package */ class SharedConfigMonitor<T> implements IObservableSharedConfigMonitor<T> {
+    private final @NotNull IObservableConfigurationService<T> service;
+
+    public SharedConfigMonitor(@NotNull IObservableConfigurationService<T> service) {
         this.service = service;
     }
 
@@ -24,4 +27,9 @@ import sharedconfig.core.interfaces.ISharedConfigMonitor;
         }
         return latest;
     }
+
+    @Override
+    public @NotNull ISharedConfigSubscription onChange(@NotNull Consumer<T> listener) {
+        return service.onChange(listener);
+    }
 }
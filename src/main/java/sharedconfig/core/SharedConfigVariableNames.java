@@ -0,0 +1,53 @@
+package sharedconfig.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Набор имен переменных, значения которых запрашиваются вместе (см. {@link sharedconfig.core.interfaces.IConfigurationVersionSnapshot#getValues}).
+ * Имена разрешаются в слоты раскладки скоупа один раз, результат переиспользуется, пока набор применяется к той же раскладке,
+ * поэтому набор следует создавать один раз, например в статическом поле
+ */
+public final class SharedConfigVariableNames {
+    private final @NotNull String[] names;
+    /** результат разрешения имен для последней раскладки, к которой применялся набор */
+    private volatile @Nullable Resolution resolution;
+
+    public SharedConfigVariableNames(@NotNull String... names) {
+        this.names = names.clone();
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public @NotNull String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * Порядковые номера переменных в скоупе, -1 для переменных, не объявленных в скоупе
+     */
+    /* package */ @NotNull int[] resolve(@NotNull ConfigurationScopeLayout.Scope scope) {
+        var current = resolution;
+        if (current != null && current.scope == scope)
+            return current.indexes;
+
+        var indexes = new int[names.length];
+        for (int i = 0; i < names.length; ++i) {
+            indexes[i] = scope.indexOf(names[i]);
+        }
+        resolution = new Resolution(scope, indexes);
+        return indexes;
+    }
+
+    private static class Resolution {
+        private final @NotNull ConfigurationScopeLayout.Scope scope;
+        private final @NotNull int[] indexes;
+
+        private Resolution(@NotNull ConfigurationScopeLayout.Scope scope, @NotNull int[] indexes) {
+            this.scope = scope;
+            this.indexes = indexes;
+        }
+    }
+}
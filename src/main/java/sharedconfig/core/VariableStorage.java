@@ -0,0 +1,11 @@
+package sharedconfig.core;
+
+/**
+ * Способ хранения значений переменных загруженных changeset'ов
+ */
+public enum VariableStorage {
+    /** Строки в heap */
+    HEAP,
+    /** Байты UTF-8 в direct ByteBuffer вне heap, строка создается при каждом чтении значения */
+    OFF_HEAP
+}
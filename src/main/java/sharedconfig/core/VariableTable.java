@@ -0,0 +1,117 @@
+package sharedconfig.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Неизменяемая таблица значений переменных changeset'а по слотам
+ */
+/* package */ abstract class VariableTable {
+    private static final VariableTable empty = new HeapVariableTable(new String[0]);
+
+    public static @NotNull VariableTable empty() {
+        return empty;
+    }
+
+    /**
+     * Построить таблицу из значений по слотам
+     * @param values значения по слотам, null если значение не задано; массив не должен изменяться после вызова
+     */
+    public static @NotNull VariableTable create(@NotNull String[] values, @NotNull VariableStorage storage) {
+        return storage == VariableStorage.OFF_HEAP ? OffHeapVariableTable.create(values) : new HeapVariableTable(values);
+    }
+
+    /**
+     * Количество слотов
+     */
+    public abstract int size();
+
+    /**
+     * Значение слота или null, если значение не задано
+     */
+    public abstract @Nullable String get(int slot);
+
+    private static class HeapVariableTable extends VariableTable {
+        private final @NotNull String[] values;
+
+        private HeapVariableTable(@NotNull String[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public @Nullable String get(int slot) {
+            return values[slot];
+        }
+    }
+
+    /**
+     * Значения хранятся в direct ByteBuffer: индекс (смещение и длина каждого слота) и следом байты UTF-8 значений.
+     * В heap остается только сам объект буфера
+     */
+    private static class OffHeapVariableTable extends VariableTable {
+        /** размер записи индекса: смещение и длина значения, длина -1 если значение не задано */
+        private static final int INDEX_ENTRY_SIZE = 2 * Integer.BYTES;
+
+        private final @NotNull ByteBuffer buffer;
+        private final int size;
+
+        private OffHeapVariableTable(@NotNull ByteBuffer buffer, int size) {
+            this.buffer = buffer;
+            this.size = size;
+        }
+
+        private static @NotNull OffHeapVariableTable create(@NotNull String[] values) {
+            var encoded = new byte[values.length][];
+            long length = (long) values.length * INDEX_ENTRY_SIZE;
+            for (int slot = 0; slot < values.length; ++slot) {
+                if (values[slot] != null) {
+                    encoded[slot] = values[slot].getBytes(StandardCharsets.UTF_8);
+                    length += encoded[slot].length;
+                }
+            }
+            if (length > Integer.MAX_VALUE)
+                throw new IllegalStateException("Variable values exceed maximum off-heap table size");
+
+            var buffer = ByteBuffer.allocateDirect((int) length);
+            var offset = values.length * INDEX_ENTRY_SIZE;
+            for (int slot = 0; slot < values.length; ++slot) {
+                var value = encoded[slot];
+                buffer.putInt(slot * INDEX_ENTRY_SIZE, offset);
+                buffer.putInt(slot * INDEX_ENTRY_SIZE + Integer.BYTES, value != null ? value.length : -1);
+                if (value != null) {
+                    buffer.position(offset);
+                    buffer.put(value);
+                    offset += value.length;
+                }
+            }
+            return new OffHeapVariableTable(buffer.clear().asReadOnlyBuffer(), values.length);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public @Nullable String get(int slot) {
+            if (slot < 0 || slot >= size)
+                throw new IndexOutOfBoundsException(slot);
+
+            var length = buffer.getInt(slot * INDEX_ENTRY_SIZE + Integer.BYTES);
+            if (length < 0)
+                return null;
+
+            var bytes = new byte[length];
+            buffer.duplicate().position(buffer.getInt(slot * INDEX_ENTRY_SIZE)).get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package sharedconfig.core.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Привязка параметра конструктора к переменной конфигурации.
+ * Для класса, все параметры конструктора которого помечены аннотацией, на этапе компиляции генерируется
+ * маппер {@code <Класс>SharedConfigMapper}, строящий объект из снимка конфигурации без рефлексии.
+ * Поддерживаемые типы: String, int, long, boolean, их обертки и java.time.Duration
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.PARAMETER)
+public @interface SharedConfigVariable {
+    /**
+     * Имя переменной
+     */
+    String value();
+
+    /**
+     * Значение, используемое если переменная отсутствует в снимке.
+     * Пустая строка - значение по умолчанию не задано (null для ссылочных типов, 0/false для примитивов)
+     */
+    String defaultValue() default "";
+}
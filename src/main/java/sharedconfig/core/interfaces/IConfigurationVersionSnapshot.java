@@ -2,6 +2,7 @@ package sharedconfig.core.interfaces;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import sharedconfig.core.SharedConfigVariableNames;
 
 import java.util.Map;
 import java.util.Optional;
@@ -10,6 +11,18 @@ public interface IConfigurationVersionSnapshot {
     @NotNull Long getVersionId();
     @NotNull Map<String, String> getVariables();
     Optional<String> getVariable(@NotNull String id);
+
+    /**
+     * Значения переменных в порядке имен набора, null для незаданных переменных
+     */
+    default @NotNull String[] getValues(@NotNull SharedConfigVariableNames names) {
+        var variables = getVariables();
+        var values = new String[names.size()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = variables.get(names.getName(i));
+        }
+        return values;
+    }
 }
 
 
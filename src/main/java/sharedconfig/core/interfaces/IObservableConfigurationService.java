@@ -0,0 +1,22 @@
+package sharedconfig.core.interfaces;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Consumer;
+
+/**
+ * Сервис скоупа конфигурации с подпиской на изменения
+ */
+public interface IObservableConfigurationService<Configuration> extends IScopedConfigurationService<Configuration> {
+    /**
+     * Получить обозреваемую конфигурационную версию
+     */
+    @Override
+    @NotNull IObservableSharedConfigMonitor<Configuration> getObservedVersion();
+
+    /**
+     * Подписаться на изменения последней версии конфигурации.
+     * Подписчик вызывается только если после обновления хранилища значения переменных скоупа действительно изменились
+     */
+    @NotNull ISharedConfigSubscription onChange(@NotNull Consumer<Configuration> listener);
+}
@@ -0,0 +1,15 @@
+package sharedconfig.core.interfaces;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Consumer;
+
+/**
+ * Обозреваемая конфигурационная версия с подпиской на изменения
+ */
+public interface IObservableSharedConfigMonitor<T> extends ISharedConfigMonitor<T> {
+    /**
+     * Подписаться на изменения последней версии конфигурации
+     */
+    @NotNull ISharedConfigSubscription onChange(@NotNull Consumer<T> listener);
+}
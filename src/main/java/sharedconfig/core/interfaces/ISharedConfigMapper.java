@@ -0,0 +1,12 @@
+package sharedconfig.core.interfaces;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Function;
+
+/**
+ * Построитель типизированной конфигурации из снимка версии.
+ * Реализации генерируются по аннотациям {@link sharedconfig.core.annotations.SharedConfigVariable}
+ */
+public interface ISharedConfigMapper<T> extends Function<@NotNull IConfigurationVersionSnapshot, T> {
+}
@@ -0,0 +1,54 @@
+package sharedconfig.core.interfaces;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Приемник метрик движка конфигурации. Реализация вызывается из фоновых потоков движка,
+ * должна быть потокобезопасной и не должна блокировать вызывающий поток
+ */
+public interface ISharedConfigMetrics {
+    /** длительность проверки изменений движком целиком */
+    String REFRESH_DURATION = "sharedconfig.refresh.duration";
+    /** длительность построения контекста приложения (обнаружение агента, публикация приложения) */
+    String CONTEXT_CREATE_DURATION = "sharedconfig.context.create.duration";
+    /** длительность загрузки prepared.xml вместе с загрузкой changeset'ов */
+    String PREPARED_LOAD_DURATION = "sharedconfig.prepared.load.duration";
+    /** длительность загрузки одного источника (prepared.vars.xml) */
+    String STORE_ITEM_LOAD_DURATION = "sharedconfig.store_item.load.duration";
+    /** количество источников, которые не удалось загрузить */
+    String STORE_ITEM_LOAD_FAILURES = "sharedconfig.store_item.load.failures";
+    /** обращения к двоичному кэшу prepared.vars.xml */
+    String VARS_CACHE_HITS = "sharedconfig.vars_cache.hits";
+    String VARS_CACHE_MISSES = "sharedconfig.vars_cache.misses";
+    /** обращения к кэшу построенных версий конфигурации скоупов */
+    String SCOPE_CACHE_HITS = "sharedconfig.scope_cache.hits";
+    String SCOPE_CACHE_MISSES = "sharedconfig.scope_cache.misses";
+    /** версия хранилища */
+    String STORE_VERSION = "sharedconfig.store.version";
+    /** время последней успешной проверки изменений, мс с начала эпохи */
+    String STORE_REFRESH_TIME = "sharedconfig.store.refresh_time";
+    /** время последнего изменения версии хранилища, мс с начала эпохи */
+    String STORE_CHANGE_TIME = "sharedconfig.store.change_time";
+    /** количество актуальных и удаленных changeset'ов, доступных в хранилище */
+    String ACTUAL_CHANGESETS = "sharedconfig.changesets.actual";
+    String DEPRECATED_CHANGESETS = "sharedconfig.changesets.deprecated";
+    /** количество changeset'ов, которые не удалось загрузить при последнем обновлении */
+    String FAILED_CHANGESETS = "sharedconfig.changesets.failed";
+    /** количество объявленных в инвентаризации переменных */
+    String DECLARED_VARIABLES = "sharedconfig.variables.declared";
+
+    /**
+     * Зарегистрировать длительность этапа
+     */
+    void recordDuration(@NotNull String name, long nanos);
+
+    /**
+     * Увеличить счетчик
+     */
+    void increment(@NotNull String name, long delta);
+
+    /**
+     * Установить текущее значение показателя
+     */
+    void setGauge(@NotNull String name, long value);
+}
@@ -0,0 +1,9 @@
+package sharedconfig.core.interfaces;
+
+/**
+ * Подписка на изменения конфигурации, закрытие прекращает вызов подписчика
+ */
+public interface ISharedConfigSubscription extends AutoCloseable {
+    @Override
+    void close();
+}
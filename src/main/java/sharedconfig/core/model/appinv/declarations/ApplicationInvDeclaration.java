@@ -1,6 +1,5 @@
 package sharedconfig.core.model.appinv.declarations;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.jetbrains.annotations.NotNull;
 import sharedconfig.utils.NameHashMap;
@@ -8,10 +7,43 @@ import sharedconfig.utils.NameVersionMap;
 
 import java.util.List;
 
-@AllArgsConstructor @Getter
+@Getter
 public class ApplicationInvDeclaration {
     private final @NotNull ApplicationDeclaration application;
     private final @NotNull List<AlertDeclaration> alerts;
     private final @NotNull NameVersionMap<BlockDeclaration> blocks;
     private final @NotNull NameHashMap<VariableDeclaration> variables;
+    /** количество слотов переменных, значения changeset'а хранятся в массиве такого размера */
+    private final int slotCount;
+
+    public ApplicationInvDeclaration(@NotNull ApplicationDeclaration application,
+                                     @NotNull List<AlertDeclaration> alerts,
+                                     @NotNull NameVersionMap<BlockDeclaration> blocks,
+                                     @NotNull NameHashMap<VariableDeclaration> variables) {
+        this.application = application;
+        this.alerts = alerts;
+        this.blocks = blocks;
+        this.variables = variables;
+        this.slotCount = assignSlots();
+    }
+
+    /**
+     * Назначить каждому объявлению переменной номер слота.
+     * Объявления с одинаковым name-hash в приложении и блоках получают один и тот же слот
+     */
+    private int assignSlots() {
+        var slot = 0;
+        for (var variable : variables.values()) {
+            variable.setSlot(slot++);
+        }
+        for (var variable : application.getVariables().values()) {
+            variable.setSlot(variables.get(variable.getId()).getSlot());
+        }
+        for (var block : blocks.values()) {
+            for (var variable : block.getVariables().values()) {
+                variable.setSlot(variables.get(variable.getId()).getSlot());
+            }
+        }
+        return slot;
+    }
 }
@@ -11,6 +11,8 @@ public class VariableDeclaration {
     @Getter private final @NotNull NameHashTuple id;
     @Getter private final @Nullable String description;
     @Getter private final @Nullable String defaultValue;
+    /** номер слота значения переменной в массиве значений changeset'а, назначается при построении инвентаризации */
+    @Getter private int slot = -1;
 
     public VariableDeclaration(@NotNull String name, @NotNull String hash, @Nullable String description, @Nullable String defaultValue) {
         this.id = new NameHashTuple(name, hash);
@@ -26,6 +28,10 @@ public class VariableDeclaration {
         return this.id.getHash();
     }
 
+    /* package */ void setSlot(int slot) {
+        this.slot = slot;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,75 @@
+package sharedconfig.helpers;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+
+/**
+ * Разбор значений переменных конфигурации, используется сгенерированными мапперами
+ */
+public class ConfigurationValueHelper {
+    public static int toInt(@Nullable String value, @NotNull String variableName, int defaultValue) {
+        if (value == null)
+            return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw invalidValue(variableName, value, "int", e);
+        }
+    }
+
+    public static long toLong(@Nullable String value, @NotNull String variableName, long defaultValue) {
+        if (value == null)
+            return defaultValue;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw invalidValue(variableName, value, "long", e);
+        }
+    }
+
+    public static boolean toBoolean(@Nullable String value, @NotNull String variableName, boolean defaultValue) {
+        if (value == null)
+            return defaultValue;
+        var trimmed = value.trim();
+        if ("true".equalsIgnoreCase(trimmed))
+            return true;
+        if ("false".equalsIgnoreCase(trimmed))
+            return false;
+        throw invalidValue(variableName, value, "boolean", null);
+    }
+
+    public static @Nullable Integer toInteger(@Nullable String value, @NotNull String variableName) {
+        return value == null ? null : toInt(value, variableName, 0);
+    }
+
+    public static @Nullable Long toLongObject(@Nullable String value, @NotNull String variableName) {
+        return value == null ? null : toLong(value, variableName, 0);
+    }
+
+    public static @Nullable Boolean toBooleanObject(@Nullable String value, @NotNull String variableName) {
+        return value == null ? null : toBoolean(value, variableName, false);
+    }
+
+    /**
+     * Разобрать длительность в формате ISO-8601 (PT30S) или количество миллисекунд
+     */
+    public static @Nullable Duration toDuration(@Nullable String value, @NotNull String variableName) {
+        if (value == null)
+            return null;
+        var trimmed = value.trim();
+        try {
+            if (!trimmed.isEmpty() && (Character.isDigit(trimmed.charAt(0)) || trimmed.charAt(0) == '-') && trimmed.chars().skip(1).allMatch(Character::isDigit))
+                return Duration.ofMillis(Long.parseLong(trimmed));
+            return Duration.parse(trimmed);
+        } catch (RuntimeException e) {
+            throw invalidValue(variableName, value, "Duration", e);
+        }
+    }
+
+    private static @NotNull IllegalArgumentException invalidValue(@NotNull String variableName, @NotNull String value,
+                                                                  @NotNull String type, @Nullable Exception cause) {
+        return new IllegalArgumentException(String.format("Значение [%s] переменной [%s] не может быть преобразовано к типу %s", value, variableName, type), cause);
+    }
+}
@@ -5,13 +5,20 @@ import lombok.val;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
+import java.util.zip.CRC32C;
 
 public class HashHelper {
+    /** буфер чтения файлов для вычисления хэша содержимого, direct чтобы избежать копирования в heap */
+    private static final ThreadLocal<ByteBuffer> contentHashBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(64 * 1024));
+
     @SneakyThrows
     public static byte[] getSHA256Hash(String originalString) {
         MessageDigest digest = MessageDigest.getInstance("SHA-256");
@@ -21,8 +28,11 @@ public class HashHelper {
     @SneakyThrows
     public static String getSHA256HashString(String originalString) {
         val digest = MessageDigest.getInstance("SHA-256");
-        val hash = digest.digest(originalString.getBytes(StandardCharsets.UTF_8));
-        val hexString = new StringBuilder();
+        return toHexString(digest.digest(originalString.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static String toHexString(byte[] hash) {
+        val hexString = new StringBuilder(hash.length * 2);
         for (byte b : hash) {
             val hex = Integer.toHexString(0xff & b);
             if (hex.length() == 1)
@@ -48,4 +58,21 @@ public class HashHelper {
             return 0L;
         }
     }
+
+    /**
+     * Вычислить CRC32C содержимого файла, файл читается потоково через FileChannel
+     */
+    public static long getFileContentHash(Path path) throws IOException {
+        val crc = new CRC32C();
+        val buffer = contentHashBuffer.get();
+        try (val channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
 }
@@ -8,15 +8,25 @@ import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import sharedconfig.utils.AttributeSlots;
 import sharedconfig.utils.Either;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -25,6 +35,55 @@ import java.util.Optional;
 import java.util.function.Predicate;
 
 public class XmlHelper {
+    private static final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+    private static final DocumentBuilderFactory documentBuilderFactory = createDocumentBuilderFactory();
+    private static final TransformerFactory transformerFactory = createTransformerFactory();
+    /** DocumentBuilder и Transformer не потокобезопасны, поэтому каждый поток использует свой экземпляр и сбрасывает его после использования */
+    private static final ThreadLocal<DocumentBuilder> documentBuilder = ThreadLocal.withInitial(XmlHelper::createDocumentBuilder);
+    private static final ThreadLocal<Transformer> transformer = ThreadLocal.withInitial(XmlHelper::createTransformer);
+
+    private static XMLInputFactory createXmlInputFactory() {
+        val factory = XMLInputFactory.newInstance();
+        // атрибуты вида a:n используются без объявления пространств имен
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    @SneakyThrows
+    private static DocumentBuilderFactory createDocumentBuilderFactory() {
+        val factory = DocumentBuilderFactory.newInstance();
+        // внешние сущности и DTD не загружаются
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        factory.setXIncludeAware(false);
+        return factory;
+    }
+
+    @SneakyThrows
+    private static TransformerFactory createTransformerFactory() {
+        val factory = TransformerFactory.newInstance();
+        factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_STYLESHEET, "");
+        return factory;
+    }
+
+    @SneakyThrows
+    private static DocumentBuilder createDocumentBuilder() {
+        return documentBuilderFactory.newDocumentBuilder();
+    }
+
+    @SneakyThrows
+    private static Transformer createTransformer() {
+        return transformerFactory.newTransformer();
+    }
+
     /**
      * Получить первый дочерний элемент узла с именем
      * @param parent родительский узел
@@ -97,6 +156,19 @@ public class XmlHelper {
 
 
 
+    /**
+     * Заполнить значения набора атрибутов за один проход по атрибутам элемента.
+     * Если атрибут с одним именем встречается несколько раз (с точностью до регистра) - используется первый
+     */
+    public static void readAttributes(@NotNull Element element, @NotNull AttributeSlots slots) {
+        slots.clear();
+        val attributes = element.getAttributes();
+        for (int i = 0, length = attributes.getLength(); i < length; ++i) {
+            val attribute = (Attr) attributes.item(i);
+            slots.offer(null, attribute.getNodeName(), attribute.getValue());
+        }
+    }
+
     public static Optional<String> tryGetAttributeValue(@NotNull Element element, @NotNull Predicate<Attr> predicate) {
         for (int i = 0; i < element.getAttributes().getLength(); ++i) {
             val attribute = (Attr)element.getAttributes().item(i);
@@ -107,40 +179,128 @@ public class XmlHelper {
         return Optional.empty();
     }
 
+    /**
+     * Создать потоковый reader документа
+     * @param input поток с содержимым документа, закрывается вызывающим
+     */
+    public static @NotNull XMLStreamReader createStreamReader(@NotNull InputStream input) throws XMLStreamException {
+        return xmlInputFactory.createXMLStreamReader(input);
+    }
+
+    /**
+     * Заполнить значения набора атрибутов текущего элемента за один проход, без построения полных имен атрибутов
+     */
+    public static void readAttributes(@NotNull XMLStreamReader reader, @NotNull AttributeSlots slots) {
+        slots.clear();
+        for (int i = 0, count = reader.getAttributeCount(); i < count; ++i) {
+            slots.offer(reader.getAttributePrefix(i), reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+        }
+    }
+
+    /**
+     * Прочитать текстовое содержимое текущего элемента вместе с вложенными элементами (аналог {@link Node#getTextContent()}).
+     * После вызова reader стоит на закрывающем теге элемента
+     */
+    public static @NotNull String readElementText(@NotNull XMLStreamReader reader) throws XMLStreamException {
+        String first = null;
+        StringBuilder builder = null;
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    ++depth;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    --depth;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    if (first == null) {
+                        first = reader.getText();
+                    } else {
+                        if (builder == null)
+                            builder = new StringBuilder(first);
+                        builder.append(reader.getText());
+                    }
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    throw new XMLStreamException("Unexpected end of document");
+                default:
+                    break;
+            }
+        }
+        return builder != null ? builder.toString() : first != null ? first : "";
+    }
+
+    /**
+     * Пропустить текущий элемент вместе с содержимым. После вызова reader стоит на закрывающем теге элемента
+     */
+    public static void skipElement(@NotNull XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    ++depth;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    --depth;
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    throw new XMLStreamException("Unexpected end of document");
+                default:
+                    break;
+            }
+        }
+    }
+
     @SneakyThrows
     public static String toXmlString(Document doc) {
-        val transformer = TransformerFactory.newInstance().newTransformer();
         val writer = new StringWriter();
-        val output = new StreamResult(writer);
-        val input = new DOMSource(doc);
-        transformer.transform(input, output);
+        transform(doc, new StreamResult(writer));
         return writer.toString();
     }
 
+    /**
+     * Записать документ в поток в кодировке UTF-8, результат совпадает с {@link #toXmlString(Document)} в UTF-8
+     */
+    @SneakyThrows
+    public static void writeTo(Document doc, OutputStream output) {
+        transform(doc, new StreamResult(output));
+    }
+
     @SneakyThrows
     public static void writeToFile(Document doc, Path targetFile) {
-        val transformer = TransformerFactory.newInstance().newTransformer();
         val file = new File(targetFile.toAbsolutePath().toString());
-        val output = new StreamResult(file);
-        val input = new DOMSource(doc);
-        transformer.transform(input, output);
-        //output.getWriter().flush();
-        //output.getWriter().close();
+        transform(doc, new StreamResult(file));
     }
 
     public static Either<Exception, Document> tryLoadDocument(Path path) {
         if (path == null || !Files.exists(path)) {
             return Either.left(new FileNotFoundException(String.format("File [%s] doesnt exists", path)));
         }
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder = null;
-        Document doc = null;
         try {
-            dBuilder = dbFactory.newDocumentBuilder();
-            doc = dBuilder.parse(path.toString());
-            return Either.right(doc);
+            val builder = documentBuilder.get();
+            try {
+                return Either.right(builder.parse(path.toFile()));
+            } finally {
+                builder.reset();
+            }
         } catch (Exception e) {
             return Either.left(e);
         }
     }
+
+    /**
+     * Сериализовать документ переиспользуемым Transformer'ом текущего потока
+     */
+    private static void transform(Document doc, StreamResult output) throws TransformerException {
+        val transformer = XmlHelper.transformer.get();
+        try {
+            transformer.transform(new DOMSource(doc), output);
+        } finally {
+            transformer.reset();
+        }
+    }
 }
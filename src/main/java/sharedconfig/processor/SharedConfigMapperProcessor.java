@@ -0,0 +1,226 @@
+package sharedconfig.processor;
+
+import sharedconfig.core.annotations.SharedConfigVariable;
+import sharedconfig.helpers.ConfigurationValueHelper;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Генерирует мапперы {@code <Класс>SharedConfigMapper} для конструкторов, параметры которых помечены {@link SharedConfigVariable}.
+ * Сгенерированный маппер читает переменные по именам-константам и разбирает значения напрямую, без рефлексии
+ */
+public class SharedConfigMapperProcessor extends AbstractProcessor {
+    private static final String MAPPER_SUFFIX = "SharedConfigMapper";
+    private static final String HELPER = ConfigurationValueHelper.class.getCanonicalName();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Set.of(SharedConfigVariable.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        var constructors = new LinkedHashSet<ExecutableElement>();
+        for (var element : roundEnv.getElementsAnnotatedWith(SharedConfigVariable.class)) {
+            var enclosing = element.getEnclosingElement();
+            if (enclosing.getKind() != ElementKind.CONSTRUCTOR) {
+                error(element, "@SharedConfigVariable is supported only on constructor parameters");
+                continue;
+            }
+            constructors.add((ExecutableElement) enclosing);
+        }
+
+        var processedTypes = new HashSet<TypeElement>();
+        for (var constructor : constructors) {
+            var type = (TypeElement) constructor.getEnclosingElement();
+            if (!processedTypes.add(type)) {
+                error(constructor, "Only one constructor of %s can be bound to shared configuration", type.getQualifiedName());
+                continue;
+            }
+            if (isValidTarget(type, constructor)) {
+                generateMapper(type, constructor);
+            }
+        }
+        return true;
+    }
+
+    private boolean isValidTarget(TypeElement type, ExecutableElement constructor) {
+        var isValid = true;
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "Bound type %s must not be abstract", type.getQualifiedName());
+            isValid = false;
+        }
+        if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+            error(constructor, "Bound constructor of %s must not be private", type.getQualifiedName());
+            isValid = false;
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "Bound nested type %s must be static", type.getQualifiedName());
+            isValid = false;
+        }
+        for (Element current = type; current.getKind() != ElementKind.PACKAGE; current = current.getEnclosingElement()) {
+            if (current.getModifiers().contains(Modifier.PRIVATE)) {
+                error(type, "Bound type %s must not be private", type.getQualifiedName());
+                isValid = false;
+                break;
+            }
+        }
+        for (var parameter : constructor.getParameters()) {
+            var variable = parameter.getAnnotation(SharedConfigVariable.class);
+            if (variable == null) {
+                error(parameter, "All parameters of a bound constructor must be annotated with @SharedConfigVariable");
+                isValid = false;
+                continue;
+            }
+            var valueType = ValueType.of(parameter.asType());
+            if (valueType == null) {
+                error(parameter, "Unsupported type %s, expected String, int, long, boolean, their wrappers or java.time.Duration", parameter.asType());
+                isValid = false;
+                continue;
+            }
+            if (!variable.defaultValue().isEmpty()) {
+                try {
+                    valueType.validate(variable.defaultValue(), variable.value());
+                } catch (IllegalArgumentException e) {
+                    error(parameter, "Invalid default value: %s", e.getMessage());
+                    isValid = false;
+                }
+            }
+        }
+        return isValid;
+    }
+
+    private void generateMapper(TypeElement type, ExecutableElement constructor) {
+        var packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        var mapperName = getMapperName(type);
+        var typeName = type.getQualifiedName().toString();
+        var isPublic = type.getModifiers().contains(Modifier.PUBLIC);
+        var elements = processingEnv.getElementUtils();
+
+        var code = new StringBuilder();
+        if (!packageName.isEmpty())
+            code.append("package ").append(packageName).append(";\n\n");
+        code.append("@javax.annotation.processing.Generated(\"").append(getClass().getCanonicalName()).append("\")\n");
+        code.append(isPublic ? "public " : "").append("final class ").append(mapperName)
+                .append(" implements sharedconfig.core.interfaces.ISharedConfigMapper<").append(typeName).append("> {\n");
+        code.append("    public static final ").append(mapperName).append(" INSTANCE = new ").append(mapperName).append("();\n\n");
+
+        // имена переменных разрешаются в слоты раскладки скоупа один раз, а не при каждом построении
+        var parameters = constructor.getParameters();
+        code.append("    private static final sharedconfig.core.SharedConfigVariableNames NAMES = new sharedconfig.core.SharedConfigVariableNames(");
+        for (int i = 0; i < parameters.size(); ++i) {
+            var variable = parameters.get(i).getAnnotation(SharedConfigVariable.class);
+            code.append(i == 0 ? "\n            " : ",\n            ").append(elements.getConstantExpression(variable.value()));
+        }
+        code.append(");\n\n");
+        code.append("    @Override\n");
+        code.append("    public ").append(typeName).append(" apply(sharedconfig.core.interfaces.IConfigurationVersionSnapshot snapshot) {\n");
+        code.append("        java.lang.String[] values = snapshot.getValues(NAMES);\n");
+
+        var arguments = new ArrayList<String>();
+        for (int i = 0; i < parameters.size(); ++i) {
+            var parameter = parameters.get(i);
+            var variable = parameter.getAnnotation(SharedConfigVariable.class);
+            var valueType = Objects.requireNonNull(ValueType.of(parameter.asType()));
+            var name = elements.getConstantExpression(variable.value());
+            var local = "value" + i;
+            code.append("        java.lang.String ").append(local).append(" = values[").append(i).append("];\n");
+            if (!variable.defaultValue().isEmpty()) {
+                code.append("        if (").append(local).append(" == null) ").append(local).append(" = ")
+                        .append(elements.getConstantExpression(variable.defaultValue())).append(";\n");
+            }
+            arguments.add(valueType.convert(local, name));
+        }
+
+        code.append("        return new ").append(typeName).append("(");
+        for (int i = 0; i < arguments.size(); ++i) {
+            code.append(i == 0 ? "\n                " : ",\n                ").append(arguments.get(i));
+        }
+        code.append(");\n    }\n}\n");
+
+        var qualifiedMapperName = packageName.isEmpty() ? mapperName : packageName + "." + mapperName;
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedMapperName, type).openWriter()) {
+            writer.write(code.toString());
+        } catch (IOException e) {
+            error(type, "Couldn't generate %s: %s", qualifiedMapperName, e.getMessage());
+        }
+    }
+
+    /**
+     * Имя маппера: имена вложенных классов объединяются через '_'
+     */
+    private static String getMapperName(TypeElement type) {
+        var names = new ArrayDeque<String>();
+        for (Element current = type; current.getKind() != ElementKind.PACKAGE; current = current.getEnclosingElement()) {
+            names.addFirst(current.getSimpleName().toString());
+        }
+        return String.join("_", names) + MAPPER_SUFFIX;
+    }
+
+    private void error(Element element, String format, Object... args) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format(format, args), element);
+    }
+
+    /**
+     * Поддерживаемые типы параметров и способ их разбора
+     */
+    private enum ValueType {
+        STRING, INT, LONG, BOOLEAN, INTEGER_OBJECT, LONG_OBJECT, BOOLEAN_OBJECT, DURATION;
+
+        static ValueType of(TypeMirror type) {
+            if (type.getKind() == TypeKind.INT) return INT;
+            if (type.getKind() == TypeKind.LONG) return LONG;
+            if (type.getKind() == TypeKind.BOOLEAN) return BOOLEAN;
+            if (type.getKind() != TypeKind.DECLARED) return null;
+
+            switch (type.toString()) {
+                case "java.lang.String": return STRING;
+                case "java.lang.Integer": return INTEGER_OBJECT;
+                case "java.lang.Long": return LONG_OBJECT;
+                case "java.lang.Boolean": return BOOLEAN_OBJECT;
+                case "java.time.Duration": return DURATION;
+                default: return null;
+            }
+        }
+
+        /**
+         * Проверить значение на этапе компиляции тем же кодом, которым оно будет разбираться во время выполнения
+         */
+        void validate(String value, String variableName) {
+            switch (this) {
+                case INT: case INTEGER_OBJECT: ConfigurationValueHelper.toInt(value, variableName, 0); break;
+                case LONG: case LONG_OBJECT: ConfigurationValueHelper.toLong(value, variableName, 0); break;
+                case BOOLEAN: case BOOLEAN_OBJECT: ConfigurationValueHelper.toBoolean(value, variableName, false); break;
+                case DURATION: ConfigurationValueHelper.toDuration(value, variableName); break;
+                default: break;
+            }
+        }
+
+        String convert(String local, String name) {
+            switch (this) {
+                case INT: return HELPER + ".toInt(" + local + ", " + name + ", 0)";
+                case LONG: return HELPER + ".toLong(" + local + ", " + name + ", 0L)";
+                case BOOLEAN: return HELPER + ".toBoolean(" + local + ", " + name + ", false)";
+                case INTEGER_OBJECT: return HELPER + ".toInteger(" + local + ", " + name + ")";
+                case LONG_OBJECT: return HELPER + ".toLongObject(" + local + ", " + name + ")";
+                case BOOLEAN_OBJECT: return HELPER + ".toBooleanObject(" + local + ", " + name + ")";
+                case DURATION: return HELPER + ".toDuration(" + local + ", " + name + ")";
+                default: return local;
+            }
+        }
+    }
+}
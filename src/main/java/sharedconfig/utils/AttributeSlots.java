@@ -0,0 +1,63 @@
+package sharedconfig.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Значения фиксированного набора атрибутов элемента, имена сравниваются без учета регистра.
+ * Заполняется за один проход по атрибутам элемента и переиспользуется для всех элементов документа,
+ * номер слота - позиция имени атрибута в конструкторе
+ */
+public class AttributeSlots {
+    private final @NotNull String[] names;
+    private final @Nullable String[] values;
+
+    public AttributeSlots(@NotNull String... names) {
+        this.names = names.clone();
+        this.values = new String[names.length];
+    }
+
+    /**
+     * Значение атрибута, null если атрибут у элемента отсутствует
+     */
+    public @Nullable String get(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * Сбросить значения перед разбором следующего элемента
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+    }
+
+    /**
+     * Запомнить значение атрибута, если его имя входит в набор и значение еще не задано
+     * @param prefix префикс имени атрибута или null
+     * @param localName имя атрибута без префикса
+     */
+    public void offer(@Nullable String prefix, @NotNull String localName, @Nullable String value) {
+        var slot = indexOf(prefix, localName);
+        if (slot >= 0 && values[slot] == null)
+            values[slot] = value;
+    }
+
+    private int indexOf(@Nullable String prefix, @NotNull String localName) {
+        var prefixLength = prefix != null ? prefix.length() : 0;
+        for (int i = 0; i < names.length; ++i) {
+            var name = names[i];
+            if (prefixLength == 0) {
+                if (name.equalsIgnoreCase(localName))
+                    return i;
+            } else if (name.length() == prefixLength + 1 + localName.length()
+                    && name.charAt(prefixLength) == ':'
+                    && name.regionMatches(true, 0, prefix, 0, prefixLength)
+                    && name.regionMatches(true, prefixLength + 1, localName, 0, localName.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
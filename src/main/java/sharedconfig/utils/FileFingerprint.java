@@ -0,0 +1,87 @@
+package sharedconfig.utils;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import sharedconfig.helpers.HashHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+/**
+ * Отпечаток файла для обнаружения изменений.
+ * Дешевый отпечаток по метаданным (размер, время создания и изменения) дополняется хэшем содержимого,
+ * который пересчитывается только если метаданные изменились или файл изменялся незадолго до снятия предыдущего отпечатка
+ * (в пределах точности времени изменения файловой системы перезапись с тем же размером не меняет метаданные)
+ */
+public class FileFingerprint {
+    /** окно, в течение которого время изменения файла не позволяет отличить две записи */
+    private static final long MODIFICATION_TIME_GRANULARITY_MILLIS = 2000;
+
+    /** хэш метаданных файла */
+    @Getter private final long metadataHash;
+    @Getter private final long size;
+    @Getter private final long lastModified;
+    /** хэш содержимого, null если не вычислялся */
+    @Getter private final @Nullable Long contentHash;
+    /** момент снятия отпечатка */
+    private final long takenAt;
+
+    private FileFingerprint(long metadataHash, long size, long lastModified, @Nullable Long contentHash, long takenAt) {
+        this.metadataHash = metadataHash;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+        this.takenAt = takenAt;
+    }
+
+    /**
+     * Снять отпечаток файла
+     * @param previous предыдущий отпечаток этого же файла, хэш содержимого переиспользуется если файл заведомо не изменялся
+     * @param useContentHash вычислять ли хэш содержимого
+     */
+    public static @NotNull FileFingerprint take(@NotNull File file, @Nullable FileFingerprint previous, boolean useContentHash) throws IOException {
+        var takenAt = System.currentTimeMillis();
+        var attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        var size = attributes.size();
+        var lastModified = attributes.lastModifiedTime().toMillis();
+        var metadataHash = size;
+        metadataHash = (metadataHash * 397) ^ attributes.creationTime().toMillis();
+        metadataHash = (metadataHash * 397) ^ lastModified;
+
+        Long contentHash = null;
+        if (useContentHash) {
+            if (previous != null && previous.contentHash != null && previous.metadataHash == metadataHash && !previous.isRacy()) {
+                contentHash = previous.contentHash;
+            } else {
+                contentHash = HashHelper.getFileContentHash(file.toPath());
+            }
+        }
+        return new FileFingerprint(metadataHash, size, lastModified, contentHash, takenAt);
+    }
+
+    /**
+     * Файл изменялся в пределах точности времени изменения до снятия отпечатка,
+     * поэтому совпадение метаданных не гарантирует совпадение содержимого
+     */
+    private boolean isRacy() {
+        return takenAt - lastModified < MODIFICATION_TIME_GRANULARITY_MILLIS;
+    }
+
+    /**
+     * Изменился ли файл с момента снятия предыдущего отпечатка.
+     * Если для обоих отпечатков известен хэш содержимого - сравнивается содержимое, иначе метаданные
+     */
+    public boolean isChangedSince(@Nullable FileFingerprint previous) {
+        if (previous == null)
+            return true;
+
+        if (this.contentHash != null && previous.contentHash != null)
+            return this.size != previous.size || !Objects.equals(this.contentHash, previous.contentHash);
+
+        return this.metadataHash != previous.metadataHash;
+    }
+}
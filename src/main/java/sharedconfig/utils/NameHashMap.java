@@ -6,6 +6,7 @@ import sharedconfig.utils.tuples.NameHashTuple;
 import sharedconfig.utils.tuples.NameVersionTuple;
 import sharedconfig.utils.tuples.StrictNameVersionTuple;
 
+import java.util.Collection;
 import java.util.List;
 
 public class NameHashMap<V> {
@@ -27,4 +28,8 @@ public class NameHashMap<V> {
     public @NotNull List<V> getByName(@NotNull String name) {
         return this.map.getByFk(name);
     }
+
+    public @NotNull Collection<V> values() {
+        return this.map.values();
+    }
 }
@@ -0,0 +1,85 @@
+package sharedconfig.utils.collections;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасный пул строк для дедупликации одинаковых значений.
+ * Строки удерживаются слабыми ссылками - запись пропадает из пула, когда на строку больше никто не ссылается.
+ * Пул разбит на сегменты, чтобы параллельная загрузка не упиралась в одну блокировку
+ */
+public class StringPool {
+    private static final int SEGMENTS = 16;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final WeakHashMap<String, WeakReference<String>>[] segments = new WeakHashMap[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public StringPool() {
+        for (int i = 0; i < SEGMENTS; ++i) {
+            segments[i] = new WeakHashMap<>();
+        }
+    }
+
+    /**
+     * Получить канонический экземпляр строки, равной переданной
+     */
+    public @Nullable String intern(@Nullable String value) {
+        if (value == null)
+            return null;
+
+        var hash = value.hashCode();
+        var segment = segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+        synchronized (segment) {
+            var reference = segment.get(value);
+            var canonical = reference != null ? reference.get() : null;
+            if (canonical != null) {
+                hits.increment();
+                return canonical;
+            }
+            segment.put(value, new WeakReference<>(value));
+        }
+        misses.increment();
+        return value;
+    }
+
+    /**
+     * Количество запросов, для которых нашелся уже известный экземпляр
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Количество запросов, добавивших в пул новый экземпляр
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Доля запросов, для которых нашелся уже известный экземпляр, 0 если запросов не было
+     */
+    public double getHitRate() {
+        var hits = getHits();
+        var total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * Количество строк в пуле, включая еще не очищенные записи
+     */
+    public int size() {
+        var result = 0;
+        for (var segment : segments) {
+            synchronized (segment) {
+                result += segment.size();
+            }
+        }
+        return result;
+    }
+}
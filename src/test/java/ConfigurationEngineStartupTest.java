@@ -0,0 +1,59 @@
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sharedconfig.core.AgentEmulator;
+import sharedconfig.core.ConfigurationEngine;
+import sharedconfig.core.InMemorySharedConfigMetrics;
+import sharedconfig.core.interfaces.ISharedConfigMetrics;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class ConfigurationEngineStartupTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testStartupSignalsAreCompletedByRefresh() throws Exception {
+        val agent = new AgentEmulator(tempDir);
+        val metrics = new InMemorySharedConfigMetrics();
+        val settings = agent.createSettings("startup-test").withMetrics(metrics);
+
+        try (val engine = ConfigurationEngine.create(settings, null)) {
+            Assertions.assertSame(metrics, engine.getMetrics());
+            val storeLoaded = engine.storeLoaded();
+            val storeDirectory = agent.awaitStoreDirectory(5000);
+            agent.writeInventory(storeDirectory, List.of("app.var"), Map.of());
+
+            Assertions.assertSame(engine, engine.agentReady().get(5, TimeUnit.SECONDS));
+            Assertions.assertFalse(storeLoaded.isDone());
+            Assertions.assertFalse(engine.waitStore(100));
+
+            agent.writeChangeset(storeDirectory, 1, Map.of("app.var", "first"));
+            Assertions.assertSame(engine, storeLoaded.get(5, TimeUnit.SECONDS));
+            Assertions.assertTrue(engine.waitStore(0));
+            Assertions.assertTrue(engine.waitAgent(0));
+
+            Assertions.assertTrue(metrics.getHistogram(ISharedConfigMetrics.CONTEXT_CREATE_DURATION).getCount() > 0);
+            Assertions.assertTrue(metrics.getHistogram(ISharedConfigMetrics.REFRESH_DURATION).getCount() > 0);
+            Assertions.assertNotNull(metrics.getGauge(ISharedConfigMetrics.STORE_REFRESH_TIME));
+        }
+    }
+
+    @Test
+    void testStartupSignalsFailWhenEngineIsClosed() throws Exception {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("startup-close-test");
+
+        val engine = ConfigurationEngine.create(settings, null);
+        val storeLoaded = engine.storeLoaded();
+        engine.close();
+
+        Assertions.assertThrows(ExecutionException.class, () -> storeLoaded.get(5, TimeUnit.SECONDS));
+        Assertions.assertFalse(engine.waitStore());
+    }
+}
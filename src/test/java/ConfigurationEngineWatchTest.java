@@ -0,0 +1,41 @@
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sharedconfig.core.AgentEmulator;
+import sharedconfig.core.ChangeDetectionMode;
+import sharedconfig.core.ConfigurationEngine;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+public class ConfigurationEngineWatchTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testChangeIsDetectedWithoutPolling() throws Exception {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("watch-test")
+                .withChangeDetectionMode(ChangeDetectionMode.WATCH)
+                .withWatchFallbackInterval(Duration.ofMinutes(5));
+
+        try (val engine = ConfigurationEngine.create(settings, null)) {
+            val storeDirectory = agent.awaitStoreDirectory(5000);
+            agent.writeInventory(storeDirectory, List.of("app.var"), Map.of());
+            agent.writeChangeset(storeDirectory, 1, Map.of("app.var", "first"));
+            Assertions.assertTrue(engine.waitStore(5000));
+
+            val service = engine.getApplicationConfigurationService();
+            AgentEmulator.await(() -> service.getVersionIds().contains(1L), 5000);
+            Assertions.assertEquals("first", service.getLastVersion().getVariable("app.var").orElse(null));
+
+            // страховочный опрос выключен на время теста, изменение должно прийти через WatchService
+            agent.writeChangeset(storeDirectory, 2, Map.of("app.var", "second"));
+            AgentEmulator.await(() -> service.getVersionIds().contains(2L), 5000);
+            Assertions.assertEquals("second", service.getLastVersion().getVariable("app.var").orElse(null));
+        }
+    }
+}
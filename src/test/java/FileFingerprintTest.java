@@ -0,0 +1,59 @@
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sharedconfig.utils.FileFingerprint;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+public class FileFingerprintTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testSameSizeRewriteWithSameModificationTimeIsDetected() throws Exception {
+        val file = tempDir.resolve("prepared.xml");
+        Files.writeString(file, "<changes zv=\"1\"/>", StandardCharsets.UTF_8);
+        val modified = Files.getLastModifiedTime(file);
+        val first = FileFingerprint.take(file.toFile(), null, true);
+
+        // грубая точность времени изменения: перезапись того же размера не изменила метаданные
+        Files.writeString(file, "<changes zv=\"2\"/>", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, modified);
+        val second = FileFingerprint.take(file.toFile(), first, true);
+
+        Assertions.assertEquals(first.getMetadataHash(), second.getMetadataHash());
+        Assertions.assertTrue(second.isChangedSince(first));
+    }
+
+    @Test
+    void testTouchWithoutContentChangeIsIgnored() throws Exception {
+        val file = tempDir.resolve("prepared.vars.xml");
+        Files.writeString(file, "<variables/>", StandardCharsets.UTF_8);
+        val first = FileFingerprint.take(file.toFile(), null, true);
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+        val touched = FileFingerprint.take(file.toFile(), first, true);
+        Assertions.assertNotEquals(first.getMetadataHash(), touched.getMetadataHash());
+        Assertions.assertFalse(touched.isChangedSince(first));
+
+        val metadataOnly = FileFingerprint.take(file.toFile(), null, false);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 120_000));
+        Assertions.assertTrue(FileFingerprint.take(file.toFile(), metadataOnly, false).isChangedSince(metadataOnly));
+    }
+
+    @Test
+    void testContentHashIsReusedForStableFile() throws Exception {
+        val file = tempDir.resolve("prepared.xml");
+        Files.writeString(file, "<changes/>", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+        val first = FileFingerprint.take(file.toFile(), null, true);
+        val second = FileFingerprint.take(file.toFile(), first, true);
+
+        Assertions.assertEquals(first.getContentHash(), second.getContentHash());
+        Assertions.assertFalse(second.isChangedSince(first));
+    }
+}
@@ -0,0 +1,110 @@
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import sharedconfig.core.annotations.SharedConfigVariable;
+import sharedconfig.core.interfaces.IConfigurationVersionSnapshot;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+
+public class SharedConfigMapperTest {
+    @Test
+    void testAllSupportedTypesAreBound() {
+        val settings = ServiceSettingsSharedConfigMapper.INSTANCE.apply(snapshot(Map.of(
+                "service.url", "http://localhost",
+                "service.port", " 8080 ",
+                "service.limit", "10000000000",
+                "service.enabled", "TRUE",
+                "service.retries", "3",
+                "service.timeout", "PT30S",
+                "service.delay", "250")));
+
+        Assertions.assertEquals("http://localhost", settings.url);
+        Assertions.assertEquals(8080, settings.port);
+        Assertions.assertEquals(10000000000L, settings.limit);
+        Assertions.assertTrue(settings.enabled);
+        Assertions.assertEquals(3, settings.retries);
+        Assertions.assertEquals(Duration.ofSeconds(30), settings.timeout);
+        Assertions.assertEquals(Duration.ofMillis(250), settings.delay);
+    }
+
+    @Test
+    void testMissingVariablesUseDefaults() {
+        val settings = ServiceSettingsSharedConfigMapper.INSTANCE.apply(snapshot(Map.of()));
+
+        Assertions.assertNull(settings.url);
+        Assertions.assertEquals(80, settings.port);
+        Assertions.assertEquals(0L, settings.limit);
+        Assertions.assertFalse(settings.enabled);
+        Assertions.assertNull(settings.retries);
+        Assertions.assertEquals(Duration.ofSeconds(5), settings.timeout);
+        Assertions.assertNull(settings.delay);
+    }
+
+    @Test
+    void testInvalidValueNamesVariable() {
+        val exception = Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ServiceSettingsSharedConfigMapper.INSTANCE.apply(snapshot(Map.of("service.port", "http"))));
+        Assertions.assertTrue(exception.getMessage().contains("service.port"));
+    }
+
+    @Test
+    void testNestedTypeIsBound() {
+        val limits = SharedConfigMapperTest_LimitsSharedConfigMapper.INSTANCE.apply(snapshot(Map.of("limits.max", "7")));
+        Assertions.assertEquals(7, limits.max);
+    }
+
+    static class Limits {
+        final int max;
+
+        Limits(@SharedConfigVariable("limits.max") int max) {
+            this.max = max;
+        }
+    }
+
+    private static IConfigurationVersionSnapshot snapshot(Map<String, String> variables) {
+        return new IConfigurationVersionSnapshot() {
+            @Override
+            public Long getVersionId() {
+                return 1L;
+            }
+
+            @Override
+            public Map<String, String> getVariables() {
+                return variables;
+            }
+
+            @Override
+            public Optional<String> getVariable(String id) {
+                return Optional.ofNullable(variables.get(id));
+            }
+        };
+    }
+}
+
+class ServiceSettings {
+    final String url;
+    final int port;
+    final long limit;
+    final boolean enabled;
+    final Integer retries;
+    final Duration timeout;
+    final Duration delay;
+
+    ServiceSettings(@SharedConfigVariable("service.url") String url,
+                    @SharedConfigVariable(value = "service.port", defaultValue = "80") int port,
+                    @SharedConfigVariable("service.limit") long limit,
+                    @SharedConfigVariable("service.enabled") boolean enabled,
+                    @SharedConfigVariable("service.retries") Integer retries,
+                    @SharedConfigVariable(value = "service.timeout", defaultValue = "PT5S") Duration timeout,
+                    @SharedConfigVariable("service.delay") Duration delay) {
+        this.url = url;
+        this.port = port;
+        this.limit = limit;
+        this.enabled = enabled;
+        this.retries = retries;
+        this.timeout = timeout;
+        this.delay = delay;
+    }
+}
@@ -0,0 +1,27 @@
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import sharedconfig.utils.collections.StringPool;
+
+public class StringPoolTest {
+    @Test
+    void testEqualStringsShareInstance() {
+        val pool = new StringPool();
+        val first = new String("value");
+        val second = new String("value");
+
+        Assertions.assertSame(first, pool.intern(first));
+        Assertions.assertSame(first, pool.intern(second));
+        Assertions.assertNotSame(first, pool.intern(new String("other")));
+        Assertions.assertNull(pool.intern(null));
+
+        Assertions.assertEquals(1, pool.getHits());
+        Assertions.assertEquals(2, pool.getMisses());
+        Assertions.assertEquals(1.0 / 3, pool.getHitRate(), 1e-9);
+    }
+
+    @Test
+    void testEmptyPoolHitRate() {
+        Assertions.assertEquals(0, new StringPool().getHitRate());
+    }
+}
@@ -0,0 +1,71 @@
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sharedconfig.helpers.XmlHelper;
+import sharedconfig.utils.AttributeSlots;
+
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class XmlHelperTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testReusedInstancesProduceSameOutput() throws Exception {
+        val file = tempDir.resolve("document.xml");
+        Files.writeString(file, "<?xml version=\"1.0\" encoding=\"utf-8\"?><configuration><application name=\"приложение\"/></configuration>", StandardCharsets.UTF_8);
+
+        val first = XmlHelper.tryLoadDocument(file).getRightOrThrow();
+        val second = XmlHelper.tryLoadDocument(file).getRightOrThrow();
+        Assertions.assertNotSame(first, second);
+
+        // сериализация переиспользуемым Transformer'ом совпадает с сериализацией новым экземпляром
+        val writer = new StringWriter();
+        TransformerFactory.newInstance().newTransformer().transform(new DOMSource(first), new StreamResult(writer));
+        Assertions.assertEquals(writer.toString(), XmlHelper.toXmlString(first));
+        Assertions.assertEquals(writer.toString(), XmlHelper.toXmlString(second));
+    }
+
+    @Test
+    void testExternalEntitiesAreNotResolved() throws Exception {
+        val secret = tempDir.resolve("secret.txt");
+        Files.writeString(secret, "secret", StandardCharsets.UTF_8);
+        val file = tempDir.resolve("document.xml");
+        Files.writeString(file, "<?xml version=\"1.0\"?><!DOCTYPE root [<!ENTITY e SYSTEM \"" + secret.toUri() + "\">]><root>&e;</root>",
+                StandardCharsets.UTF_8);
+
+        val document = XmlHelper.tryLoadDocument(file);
+        Assertions.assertFalse(document.isRight() && document.getRight().getDocumentElement().getTextContent().contains("secret"));
+    }
+
+    @Test
+    void testAttributesAreReadInSinglePass() throws Exception {
+        val xml = "<var NAME=\"first\" a:n=\"app\" B:V=\"1.0\" name=\"second\" other=\"x\">value</var>";
+        val file = tempDir.resolve("var.xml");
+        Files.writeString(file, xml, StandardCharsets.UTF_8);
+        val slots = new AttributeSlots("name", "A:N", "b:v", "hk");
+
+        XmlHelper.readAttributes(XmlHelper.tryLoadDocument(file).getRightOrThrow().getDocumentElement(), slots);
+        // порядок атрибутов в DOM не определен, поэтому дублирующийся name не проверяем
+        Assertions.assertEquals("app", slots.get(1));
+        Assertions.assertEquals("1.0", slots.get(2));
+        Assertions.assertNull(slots.get(3));
+
+        val reader = XmlHelper.createStreamReader(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        reader.nextTag();
+        XmlHelper.readAttributes(reader, slots);
+        Assertions.assertEquals("first", slots.get(0));
+        Assertions.assertEquals("app", slots.get(1));
+        Assertions.assertEquals("1.0", slots.get(2));
+        Assertions.assertNull(slots.get(3));
+        reader.close();
+    }
+}
@@ -0,0 +1,193 @@
+package sharedconfig.core;
+
+import lombok.Getter;
+import lombok.SneakyThrows;
+import sharedconfig.utils.tuples.StrictNameVersionTuple;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * Эмулятор агента конфигурации: создает .mount-configuration и публикует application.inv.xml, prepared.xml и prepared.vars.xml.
+ * Хранилище можно построить и обновлять напрямую, без фонового обновления движка
+ */
+public class AgentEmulator {
+    @Getter private final Path root;
+    @Getter private final Path agentDirectory;
+    @Getter private final Path baseDirectory;
+    @Getter private final Path storageDirectory;
+    private final TreeMap<Long, String> changesetStatuses = new TreeMap<>();
+    /** номер публикации prepared.xml (атрибут zv) */
+    private long preparedRevision = 0;
+
+    @SneakyThrows
+    public AgentEmulator(Path root) {
+        this.root = root;
+        this.agentDirectory = Files.createDirectories(root.resolve("agent")).toAbsolutePath();
+        this.baseDirectory = Files.createDirectories(root.resolve("application")).toAbsolutePath();
+        this.storageDirectory = Files.createDirectories(root.resolve("storage")).toAbsolutePath();
+        Files.writeString(baseDirectory.resolve(".mount-configuration"), agentDirectory.toString(), StandardCharsets.UTF_8);
+        Files.writeString(baseDirectory.resolve("app-declaration.xml"),
+                "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<configuration format=\"1.0.0\"><application name=\"app\" version=\"1.0.0\" format=\"1.0.0\"/></configuration>",
+                StandardCharsets.UTF_8);
+    }
+
+    @SneakyThrows
+    public ApplicationSettings createSettings(String name) {
+        return ApplicationSettings.create(baseDirectory.toString(), "app-declaration.xml", storageDirectory.toString(), name, "1.0.0");
+    }
+
+    /**
+     * Опубликовать приложение и результат инвентаризации так же, как это делают движок и агент
+     * @return директория хранилища приложения
+     */
+    @SneakyThrows
+    /* package */ Path publishApplication(ApplicationSettings settings, List<String> appVariables, Map<String, List<String>> blockVariables) {
+        var context = ApplicationContext.create(null, settings, baseDirectory.toFile());
+        var storeDirectory = context.getStorageDirectoryInfo().toPath();
+        writeInventory(storeDirectory, appVariables, blockVariables);
+        return storeDirectory;
+    }
+
+    /**
+     * Построить контроллер хранилища так же, как это делает движок
+     */
+    @SneakyThrows
+    /* package */ ConfigurationStore buildStore(ApplicationSettings settings) {
+        var context = ApplicationContext.create(null, settings, baseDirectory.toFile());
+        return ConfigurationStore.builder().tryBuild(context).getRightOrThrow();
+    }
+
+    /**
+     * Переменные скоупа приложения версии хранилища, null если версии нет или ее данные не удалось прочитать
+     */
+    /* package */ static Map<String, String> getVariables(ConfigurationStore store, long changesetId) {
+        var version = store.getState().getVersions().get(changesetId);
+        var scopeIndex = version != null ? version.tryGetScopeIndex() : null;
+        return scopeIndex != null ? scopeIndex.getApplicationVariables() : null;
+    }
+
+    /**
+     * Переменные скоупа блока версии 1.0.0 последней версии хранилища
+     */
+    /* package */ static Map<String, String> getLastBlockVariables(ConfigurationStore store, String blockName) {
+        var state = store.getState();
+        var scopeIndex = state.getVersions().get(state.getMaxChangesetId()).tryGetScopeIndex();
+        return scopeIndex.getBlockVariables(new StrictNameVersionTuple(blockName, "1.0.0"));
+    }
+
+    /**
+     * Дождаться создания библиотекой директории хранилища приложения
+     */
+    @SneakyThrows
+    public Path awaitStoreDirectory(long timeoutMillis) {
+        var deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            File[] directories = storageDirectory.toFile().listFiles(File::isDirectory);
+            if (directories != null && directories.length > 0)
+                return directories[0].toPath();
+            Thread.sleep(20);
+        }
+        throw new IllegalStateException("Store directory wasn't created");
+    }
+
+    /**
+     * Опубликовать результат инвентаризации с переменными уровня приложения и блоками
+     */
+    @SneakyThrows
+    public void writeInventory(Path storeDirectory, List<String> appVariables, Map<String, List<String>> blockVariables) {
+        var builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<inventory>\n<application name=\"app\" version=\"1.0.0\">\n");
+        for (var block : blockVariables.entrySet()) {
+            builder.append("<block name=\"").append(block.getKey()).append("\" version=\"1.0.0\"><variables>\n");
+            for (var variable : block.getValue()) {
+                appendDeclaration(builder, variable);
+            }
+            builder.append("</variables></block>\n");
+        }
+        builder.append("<variables>\n");
+        for (var variable : appVariables) {
+            appendDeclaration(builder, variable);
+        }
+        builder.append("</variables>\n</application>\n</inventory>");
+        Files.writeString(storeDirectory.resolve("application.inv.xml"), builder.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static void appendDeclaration(StringBuilder builder, String variable) {
+        builder.append("<var name=\"").append(variable).append("\" hk=\"").append(hashOf(variable)).append("\">default</var>\n");
+    }
+
+    /**
+     * Опубликовать changeset и обновить prepared.xml
+     */
+    @SneakyThrows
+    public void writeChangeset(Path storeDirectory, long id, Map<String, String> values) {
+        writeVariables(storeDirectory, id, values);
+        setChangesetStatus(storeDirectory, id, "Success");
+    }
+
+    /**
+     * Опубликовать changeset с некорректным prepared.vars.xml
+     */
+    @SneakyThrows
+    public void writeBrokenChangeset(Path storeDirectory, long id) {
+        var changesetDirectory = Files.createDirectories(storeDirectory.resolve("cs" + id));
+        Files.writeString(changesetDirectory.resolve("prepared.vars.xml"), "<variables format=\"1.0\"><var", StandardCharsets.UTF_8);
+        setChangesetStatus(storeDirectory, id, "Success");
+    }
+
+    /**
+     * Переписать prepared.vars.xml changeset'а на месте, не изменяя prepared.xml
+     */
+    @SneakyThrows
+    public void writeVariables(Path storeDirectory, long id, Map<String, String> values) {
+        var changesetDirectory = Files.createDirectories(storeDirectory.resolve("cs" + id));
+        var builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<variables format=\"1.0\">\n");
+        for (var value : values.entrySet()) {
+            builder.append("<var name=\"").append(value.getKey()).append("\" hk=\"").append(hashOf(value.getKey())).append("\">")
+                    .append(value.getValue()).append("</var>\n");
+        }
+        builder.append("</variables>");
+        Files.writeString(changesetDirectory.resolve("prepared.vars.xml"), builder.toString(), StandardCharsets.UTF_8);
+    }
+
+    @SneakyThrows
+    public void setChangesetStatus(Path storeDirectory, long id, String status) {
+        changesetStatuses.put(id, status);
+        republish(storeDirectory);
+    }
+
+    /**
+     * Опубликовать prepared.xml заново с теми же элементами, изменяется только номер публикации
+     */
+    @SneakyThrows
+    public void republish(Path storeDirectory) {
+        var builder = new StringBuilder("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<changes format=\"1.0.0\" zit=\"1\" zv=\"" + ++preparedRevision + "\">\n");
+        for (var changeset : changesetStatuses.entrySet()) {
+            builder.append("<item id=\"").append(changeset.getKey()).append("\" status=\"").append(changeset.getValue())
+                    .append("\" source=\"test\" directory=\"cs").append(changeset.getKey())
+                    .append("\" templateDirectory=\"cs").append(changeset.getKey()).append("\"/>\n");
+        }
+        builder.append("</changes>");
+        var tmp = storeDirectory.resolve("prepared.xml.tmp");
+        Files.writeString(tmp, builder.toString(), StandardCharsets.UTF_8);
+        Files.move(tmp, storeDirectory.resolve("prepared.xml"), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static String hashOf(String variable) {
+        return Integer.toHexString(variable.hashCode());
+    }
+
+    @SneakyThrows
+    public static void await(Callable<Boolean> condition, long timeoutMillis) {
+        var deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.call()) {
+            if (System.currentTimeMillis() > deadline)
+                throw new AssertionError("Condition wasn't met in " + timeoutMillis + " ms");
+            Thread.sleep(10);
+        }
+    }
+}
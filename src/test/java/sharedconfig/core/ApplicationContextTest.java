@@ -0,0 +1,111 @@
+package sharedconfig.core;
+
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sharedconfig.helpers.HashHelper;
+import sharedconfig.helpers.XmlHelper;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+public class ApplicationContextTest {
+    @TempDir
+    Path tempDir;
+
+    private Path baseDirectory;
+    private ApplicationSettings settings;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        baseDirectory = Files.createDirectories(tempDir.resolve("application")).toAbsolutePath();
+        val storageDirectory = Files.createDirectories(tempDir.resolve("storage")).toAbsolutePath();
+        Files.writeString(baseDirectory.resolve(".mount-configuration"), tempDir.resolve("agent").toAbsolutePath().toString(), StandardCharsets.UTF_8);
+        Files.writeString(baseDirectory.resolve("app-declaration.xml"),
+                "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<configuration format=\"1.0.0\"><application name=\"app\" version=\"1.0.0\" format=\"1.0.0\"/></configuration>",
+                StandardCharsets.UTF_8);
+        settings = ApplicationSettings.create(baseDirectory.toString(), "app-declaration.xml", storageDirectory.toString(), "context-test", "1.0.0");
+    }
+
+    @Test
+    void testUnchangedContextIsReused() throws Exception {
+        val discoveryDirectory = baseDirectory.toFile();
+        val context = ApplicationContext.create(null, settings, discoveryDirectory);
+
+        Assertions.assertSame(context, ApplicationContext.create(context, settings, discoveryDirectory));
+        Assertions.assertSame(context, ApplicationContext.create(context, settings, discoveryDirectory));
+    }
+
+    @Test
+    void testChangedMountConfigurationIsDetected() throws Exception {
+        val discoveryDirectory = baseDirectory.toFile();
+        val context = ApplicationContext.create(null, settings, discoveryDirectory);
+
+        val otherAgentDirectory = tempDir.resolve("other-agent").toAbsolutePath();
+        Files.writeString(baseDirectory.resolve(".mount-configuration"), otherAgentDirectory.toString(), StandardCharsets.UTF_8);
+
+        val updated = ApplicationContext.create(context, settings, discoveryDirectory);
+        Assertions.assertNotSame(context, updated);
+        Assertions.assertEquals(otherAgentDirectory.toString(), updated.getAgentDirectoryFullName());
+    }
+
+    @Test
+    void testDeletedRefFileIsRepublished() throws Exception {
+        val discoveryDirectory = baseDirectory.toFile();
+        val context = ApplicationContext.create(null, settings, discoveryDirectory);
+        Files.delete(context.getRefFileInfo().toPath());
+
+        val updated = ApplicationContext.create(context, settings, discoveryDirectory);
+        Assertions.assertNotSame(context, updated);
+        Assertions.assertTrue(new File(updated.getRefFileInfo().getAbsolutePath()).exists());
+    }
+
+    @Test
+    void testTouchedDeclarationIsNotPreparedAgain() throws Exception {
+        val discoveryDirectory = baseDirectory.toFile();
+        val context = ApplicationContext.create(null, settings, discoveryDirectory);
+        val declarationFile = settings.getDeclarationFile().toPath();
+        Files.setLastModifiedTime(declarationFile, FileTime.fromMillis(Files.getLastModifiedTime(declarationFile).toMillis() + 10_000));
+        Files.delete(context.getAppInfoFileInfo().toPath());
+
+        val updated = ApplicationContext.create(context, settings, discoveryDirectory);
+        Assertions.assertNotSame(context, updated);
+        Assertions.assertEquals(context.getDeclarationHash(), updated.getDeclarationHash());
+        Assertions.assertEquals(context.getStorageDirectoryInfo(), updated.getStorageDirectoryInfo());
+        Assertions.assertTrue(updated.getAppInfoFileInfo().exists());
+    }
+
+    @Test
+    void testMissingVersionIsTakenFromDeclaration() throws Exception {
+        val discoveryDirectory = baseDirectory.toFile();
+        val versionlessSettings = ApplicationSettings.create(baseDirectory.toString(), "app-declaration.xml",
+                settings.getStorageDirectory().toString(), "context-test", null);
+        val context = ApplicationContext.create(null, versionlessSettings, discoveryDirectory);
+        Assertions.assertEquals("1.0.0", context.getVersion());
+
+        Files.delete(context.getAppInfoFileInfo().toPath());
+        val updated = ApplicationContext.create(context, versionlessSettings, discoveryDirectory);
+        Assertions.assertNotSame(context, updated);
+        Assertions.assertEquals("1.0.0", updated.getVersion());
+        Assertions.assertEquals(context.getDeclarationHash(), updated.getDeclarationHash());
+    }
+
+    @Test
+    void testDeclarationHashMatchesSerializedDocument() throws Exception {
+        val context = ApplicationContext.create(null, settings, baseDirectory.toFile());
+
+        val document = XmlHelper.tryLoadDocument(settings.getDeclarationFile().toPath()).getRightOrThrow();
+        document.getDocumentElement().setAttribute("base-path", settings.getBaseDirectory().toAbsolutePath().toString());
+        document.getDocumentElement().setAttribute("store-path", settings.getStorageDirectory().toAbsolutePath().toString());
+        val application = XmlHelper.getElementByTagName(document.getDocumentElement(), "application");
+        application.setAttribute("name", settings.getName());
+        application.setAttribute("version", settings.getVersion());
+
+        Assertions.assertEquals(HashHelper.getSHA256HashString(XmlHelper.toXmlString(document)).substring(0, 10), context.getDeclarationHash());
+    }
+}
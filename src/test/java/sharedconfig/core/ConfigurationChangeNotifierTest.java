@@ -0,0 +1,106 @@
+package sharedconfig.core;
+
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sharedconfig.core.interfaces.IConfigurationVersionSnapshot;
+import sharedconfig.utils.tuples.StrictNameVersionTuple;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+public class ConfigurationChangeNotifierTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testListenerIsCalledOnlyWhenScopeChanges() {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("listener-test");
+        val storeDirectory = agent.publishApplication(settings, List.of("app.var"), Map.of("block", List.of("block.var")));
+        val store = agent.buildStore(settings);
+        // подписчики вызываются в потоке обновления, поэтому уведомления проверяются сразу после storeRefreshed
+        val notifier = new ConfigurationChangeNotifier(Runnable::run);
+
+        val appValues = new ArrayList<String>();
+        val blockValues = new ArrayList<String>();
+        notifier.subscribe(lastSnapshot(store, null), Function.identity(), x -> appValues.add(x.getVariable("app.var").orElse(null)));
+        notifier.subscribe(lastSnapshot(store, "block"), Function.identity(), x -> blockValues.add(x.getVariable("block.var").orElse(null)));
+
+        agent.writeChangeset(storeDirectory, 1, Map.of("app.var", "first", "block.var", "block"));
+        store.refresh();
+        notifier.storeRefreshed(store);
+        Assertions.assertEquals(List.of("first"), appValues);
+        Assertions.assertEquals(List.of("block"), blockValues);
+
+        // значения скоупа блока не изменились - подписчик блока не вызывается
+        agent.writeChangeset(storeDirectory, 2, Map.of("app.var", "second", "block.var", "block"));
+        store.refresh();
+        notifier.storeRefreshed(store);
+        Assertions.assertEquals(List.of("first", "second"), appValues);
+        Assertions.assertEquals(List.of("block"), blockValues);
+
+        // значения не изменились вовсе - подписчики не вызываются
+        agent.writeChangeset(storeDirectory, 3, Map.of("app.var", "second", "block.var", "block"));
+        store.refresh();
+        notifier.storeRefreshed(store);
+        // версия хранилища не изменилась - подписчики не опрашиваются
+        notifier.storeRefreshed(store);
+
+        agent.writeChangeset(storeDirectory, 4, Map.of("app.var", "third", "block.var", "changed"));
+        store.refresh();
+        notifier.storeRefreshed(store);
+        Assertions.assertEquals(List.of("first", "second", "third"), appValues);
+        Assertions.assertEquals(List.of("block", "changed"), blockValues);
+    }
+
+    @Test
+    void testClosedSubscriptionIsNotCalled() {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("listener-close-test");
+        val storeDirectory = agent.publishApplication(settings, List.of("app.var"), Map.of());
+        val store = agent.buildStore(settings);
+        val notifier = new ConfigurationChangeNotifier(Runnable::run);
+
+        val active = new ArrayList<String>();
+        val closed = new ArrayList<String>();
+        notifier.subscribe(lastSnapshot(store, null), Function.identity(), x -> active.add(x.getVariable("app.var").orElse(null)));
+        notifier.subscribe(lastSnapshot(store, null), Function.identity(), x -> closed.add(x.getVariable("app.var").orElse(null))).close();
+
+        agent.writeChangeset(storeDirectory, 1, Map.of("app.var", "first"));
+        store.refresh();
+        notifier.storeRefreshed(store);
+        Assertions.assertEquals(List.of("first"), active);
+        Assertions.assertTrue(closed.isEmpty());
+
+        // после закрытия рассыльщика новые подписчики не регистрируются
+        notifier.close();
+        notifier.subscribe(lastSnapshot(store, null), Function.identity(), x -> closed.add(x.getVariable("app.var").orElse(null)));
+        agent.writeChangeset(storeDirectory, 2, Map.of("app.var", "second"));
+        store.refresh();
+        notifier.storeRefreshed(store);
+        Assertions.assertEquals(List.of("first"), active);
+        Assertions.assertTrue(closed.isEmpty());
+    }
+
+    /**
+     * Снимок последней версии скоупа приложения или блока версии 1.0.0, так же как его строят сервисы скоупов
+     */
+    private static Supplier<IConfigurationVersionSnapshot> lastSnapshot(ConfigurationStore store, String blockName) {
+        return () -> {
+            var state = store.getState();
+            var maxChangesetId = state.getMaxChangesetId();
+            if (maxChangesetId == null)
+                return null;
+            var scopeIndex = state.getVersions().get(maxChangesetId).tryGetScopeIndex();
+            return new ConfigurationVersionSnapshot(maxChangesetId, blockName == null
+                    ? scopeIndex.getApplicationVariables()
+                    : scopeIndex.getBlockVariables(new StrictNameVersionTuple(blockName, "1.0.0")));
+        };
+    }
+}
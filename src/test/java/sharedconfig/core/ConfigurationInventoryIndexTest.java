@@ -0,0 +1,76 @@
+package sharedconfig.core;
+
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import sharedconfig.core.model.appinv.declarations.ApplicationDeclaration;
+import sharedconfig.core.model.appinv.declarations.ApplicationInvDeclaration;
+import sharedconfig.core.model.appinv.declarations.BlockDeclaration;
+import sharedconfig.core.model.appinv.declarations.VariableDeclaration;
+import sharedconfig.utils.NameHashMap;
+
+import java.util.Arrays;
+
+public class ConfigurationInventoryIndexTest {
+    @Test
+    void testDeclaredKeysAreResolved() {
+        val inventory = inventory();
+        val index = ConfigurationInventoryIndex.build(inventory);
+
+        // переменная без скоупа попадает во все объявления с этим именем
+        Assertions.assertArrayEquals(slots(inventory, "shared-app", "shared-block"), sorted(index.resolve("shared", "other", null, null, null)));
+        Assertions.assertArrayEquals(slots(inventory, "shared-app"), index.resolve("shared", "shared-app", "app", null, null));
+        Assertions.assertArrayEquals(slots(inventory, "block-1"), index.resolve("block.var", "block-1", null, "block", "1.0"));
+        Assertions.assertArrayEquals(slots(inventory, "block-1", "block-2"), sorted(index.resolve("block.var", null, null, "block", "")));
+        Assertions.assertSame(index.resolve("block.var", "block-1", null, "block", "1.0"), index.resolve("block.var", "block-1", "", "block", "1.0"));
+    }
+
+    @Test
+    void testUnknownKeysAreResolvedOnce() {
+        val inventory = inventory();
+        val index = ConfigurationInventoryIndex.build(inventory);
+
+        Assertions.assertEquals(0, index.resolve("unknown", "hash", "app", null, null).length);
+        Assertions.assertEquals(0, index.resolve("block.var", null, null, "block", "3.0").length);
+        // name-hash объявления блока находится и без совпадения версии блока
+        val slots = index.resolve("block.var", "block-2", null, "block", "3.0");
+        Assertions.assertArrayEquals(slots(inventory, "block-2"), slots);
+        Assertions.assertSame(slots, index.resolve("block.var", "block-2", null, "block", "3.0"));
+    }
+
+    private static ApplicationInvDeclaration inventory() {
+        val application = new ApplicationDeclaration("app", "1.0.0");
+        val allVariables = new NameHashMap<VariableDeclaration>();
+
+        val appVariable = new VariableDeclaration("shared", "shared-app", null, null);
+        application.getVariables().put(appVariable.getName(), appVariable);
+        allVariables.put(appVariable.getId(), appVariable);
+
+        for (val version : new String[] { "1.0", "2.0" }) {
+            val block = new BlockDeclaration("block", version);
+            val blockVariable = new VariableDeclaration("block.var", "block-" + version.charAt(0), null, null);
+            block.getVariables().put(blockVariable.getName(), blockVariable);
+            allVariables.put(blockVariable.getId(), blockVariable);
+            application.getBlocks().put(block.getId(), block);
+        }
+        val sharedBlock = new BlockDeclaration("shared-block", "1.0");
+        val sharedBlockVariable = new VariableDeclaration("shared", "shared-block", null, null);
+        sharedBlock.getVariables().put(sharedBlockVariable.getName(), sharedBlockVariable);
+        allVariables.put(sharedBlockVariable.getId(), sharedBlockVariable);
+        application.getBlocks().put(sharedBlock.getId(), sharedBlock);
+
+        return new ApplicationInvDeclaration(application, application.getAlerts(), application.getBlocks(), allVariables);
+    }
+
+    private static int[] slots(ApplicationInvDeclaration inventory, String... hashes) {
+        return sorted(Arrays.stream(hashes)
+                .mapToInt(hash -> inventory.getVariables().values().stream().filter(v -> v.getHash().equals(hash)).findFirst().orElseThrow().getSlot())
+                .toArray());
+    }
+
+    private static int[] sorted(int[] slots) {
+        val result = slots.clone();
+        Arrays.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,50 @@
+package sharedconfig.core;
+
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ConfigurationScopeVariablesTest {
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @EnumSource(VariableStorage.class)
+    void testScopeVariablesBehaveAsMaps(VariableStorage storage) {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("scope-variables-test-" + storage.name().toLowerCase())
+                .withVariableStorage(storage);
+        val storeDirectory = agent.publishApplication(settings, List.of("app.var", "shared", "unset"),
+                Map.of("first", List.of("shared", "first.var"), "second", List.of("second.var")));
+        val store = agent.buildStore(settings);
+
+        agent.writeChangeset(storeDirectory, 1, Map.of("app.var", "app", "shared", "shared", "first.var", "сертификат"));
+        store.refresh();
+
+        val appVariables = AgentEmulator.getVariables(store, 1);
+        val expected = new HashMap<String, String>(Map.of("app.var", "app", "shared", "shared", "first.var", "сертификат"));
+        Assertions.assertEquals(expected, appVariables);
+        Assertions.assertEquals(expected.hashCode(), appVariables.hashCode());
+        Assertions.assertFalse(appVariables.containsKey("unset"));
+        Assertions.assertFalse(appVariables.containsKey("second.var"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> appVariables.put("app.var", "changed"));
+
+        Assertions.assertEquals(Map.of("shared", "shared", "first.var", "сертификат"), AgentEmulator.getLastBlockVariables(store, "first"));
+        Assertions.assertEquals(Map.of(), AgentEmulator.getLastBlockVariables(store, "second"));
+
+        // значения набора имен совпадают со значениями таблицы скоупа, в том числе при повторном разрешении
+        val names = new SharedConfigVariableNames("first.var", "unset", "undeclared", "app.var");
+        val appSnapshot = new ConfigurationVersionSnapshot(1L, appVariables);
+        Assertions.assertArrayEquals(new String[] { "сертификат", null, null, "app" }, appSnapshot.getValues(names));
+        Assertions.assertArrayEquals(new String[] { "сертификат", null, null, "app" }, appSnapshot.getValues(names));
+        val blockSnapshot = new ConfigurationVersionSnapshot(1L, AgentEmulator.getLastBlockVariables(store, "first"));
+        Assertions.assertArrayEquals(new String[] { "сертификат", null, null, null }, blockSnapshot.getValues(names));
+    }
+}
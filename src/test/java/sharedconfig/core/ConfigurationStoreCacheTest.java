@@ -0,0 +1,86 @@
+package sharedconfig.core;
+
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sharedconfig.core.interfaces.ISharedConfigMetrics;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ConfigurationStoreCacheTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRebuiltStoreLoadsSameValuesFromCache() throws Exception {
+        val agent = new AgentEmulator(tempDir);
+        val metrics = new InMemorySharedConfigMetrics();
+        val settings = agent.createSettings("cache-test").withPreparedVarsCacheEnabled(true).withMetrics(metrics);
+        val storeDirectory = agent.publishApplication(settings, List.of("app.var"), Map.of("block", List.of("block.var")));
+        agent.writeChangeset(storeDirectory, 1, Map.of("app.var", "first", "block.var", "block"));
+
+        agent.buildStore(settings).refresh();
+        Assertions.assertEquals(1, metrics.getCount(ISharedConfigMetrics.VARS_CACHE_MISSES));
+        try (val entries = Files.list(storeDirectory.resolve(".vars-cache"))) {
+            Assertions.assertEquals(1, entries.count());
+        }
+
+        val store = agent.buildStore(settings);
+        store.refresh();
+        Assertions.assertEquals(1, metrics.getCount(ISharedConfigMetrics.VARS_CACHE_HITS));
+        Assertions.assertEquals("first", AgentEmulator.getVariables(store, 1).get("app.var"));
+        Assertions.assertEquals(Map.of("block.var", "block"), AgentEmulator.getLastBlockVariables(store, "block"));
+    }
+
+    @Test
+    void testEntriesOfDroppedChangesetsArePruned() throws Exception {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("cache-prune-test").withPreparedVarsCacheEnabled(true).withRetainedVersionCount(1);
+        val storeDirectory = agent.publishApplication(settings, List.of("app.var"), Map.of());
+        val cacheDirectory = storeDirectory.resolve(".vars-cache");
+        Files.createDirectories(cacheDirectory);
+        // запись источника, которого уже нет в prepared.xml
+        Files.write(cacheDirectory.resolve("00000000-1.bin"), new byte[] { 1 });
+
+        agent.writeChangeset(storeDirectory, 1, Map.of("app.var", "first"));
+        agent.writeChangeset(storeDirectory, 2, Map.of("app.var", "second"));
+        val store = agent.buildStore(settings);
+        store.refresh();
+
+        Assertions.assertEquals(Set.of(2L), store.getState().getVersions().keySet());
+        try (val entries = Files.list(cacheDirectory)) {
+            Assertions.assertEquals(1, entries.count());
+        }
+        Assertions.assertEquals("second", AgentEmulator.getVariables(store, 2).get("app.var"));
+    }
+
+    @Test
+    void testApplicationsSharingStorageKeepTheirEntries() throws Exception {
+        val agent = new AgentEmulator(tempDir);
+        val metrics = new InMemorySharedConfigMetrics();
+        val firstSettings = agent.createSettings("cache-first").withPreparedVarsCacheEnabled(true).withMetrics(metrics);
+        val secondSettings = agent.createSettings("cache-second").withPreparedVarsCacheEnabled(true).withMetrics(metrics);
+        val firstDirectory = agent.publishApplication(firstSettings, List.of("app.var"), Map.of());
+        val secondDirectory = agent.publishApplication(secondSettings, List.of("app.var"), Map.of());
+        agent.writeChangeset(firstDirectory, 1, Map.of("app.var", "first"));
+        agent.writeChangeset(secondDirectory, 1, Map.of("app.var", "second"));
+
+        // обновление одного хранилища не удаляет записи другого приложения с тем же корнем хранения
+        agent.buildStore(firstSettings).refresh();
+        agent.buildStore(secondSettings).refresh();
+        Assertions.assertEquals(2, metrics.getCount(ISharedConfigMetrics.VARS_CACHE_MISSES));
+
+        val firstStore = agent.buildStore(firstSettings);
+        firstStore.refresh();
+        val secondStore = agent.buildStore(secondSettings);
+        secondStore.refresh();
+        Assertions.assertEquals(2, metrics.getCount(ISharedConfigMetrics.VARS_CACHE_HITS));
+        Assertions.assertEquals("first", AgentEmulator.getVariables(firstStore, 1).get("app.var"));
+        Assertions.assertEquals("second", AgentEmulator.getVariables(secondStore, 1).get("app.var"));
+    }
+}
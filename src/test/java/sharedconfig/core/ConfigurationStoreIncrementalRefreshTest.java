@@ -0,0 +1,101 @@
+package sharedconfig.core;
+
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ConfigurationStoreIncrementalRefreshTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testStatusChangesAndFailedChangesetsAreApplied() {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("incremental-test");
+        val storeDirectory = agent.publishApplication(settings, List.of("app.var"), Map.of());
+        val store = agent.buildStore(settings);
+
+        agent.writeChangeset(storeDirectory, 1, Map.of("app.var", "first"));
+        agent.writeChangeset(storeDirectory, 2, Map.of("app.var", "second"));
+        store.refresh();
+        Assertions.assertEquals(Set.of(1L, 2L), store.getState().getActualChangesetIds());
+
+        // изменение статуса существующего changeset'а
+        agent.setChangesetStatus(storeDirectory, 2, "Removed");
+        store.refresh();
+        Assertions.assertEquals(Set.of(1L), store.getState().getActualChangesetIds());
+        Assertions.assertTrue(store.getState().getVersions().get(2L).isDeprecated());
+
+        // changeset с некорректным prepared.vars.xml не загружается
+        agent.writeBrokenChangeset(storeDirectory, 3);
+        agent.writeChangeset(storeDirectory, 4, Map.of("app.var", "fourth"));
+        store.refresh();
+        Assertions.assertEquals(Set.of(1L, 4L), store.getState().getActualChangesetIds());
+
+        // после исправления файла загрузка повторяется при следующем изменении prepared.xml
+        agent.writeChangeset(storeDirectory, 3, Map.of("app.var", "third"));
+        store.refresh();
+        Assertions.assertEquals(Set.of(1L, 3L, 4L), store.getState().getActualChangesetIds());
+        Assertions.assertEquals("third", AgentEmulator.getVariables(store, 3).get("app.var"));
+        Assertions.assertEquals("fourth", AgentEmulator.getVariables(store, 4).get("app.var"));
+
+        // prepared.xml без изменений элементов не публикует новое состояние
+        val version = store.getVersion();
+        agent.setChangesetStatus(storeDirectory, 4, "Success");
+        store.refresh();
+        Assertions.assertEquals(version, store.getVersion());
+    }
+
+    @Test
+    void testRewrittenVariablesAreReloaded() {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("rewrite-test");
+        val storeDirectory = agent.publishApplication(settings, List.of("app.var"), Map.of());
+        val store = agent.buildStore(settings);
+
+        agent.writeChangeset(storeDirectory, 1, Map.of("app.var", "first"));
+        agent.writeChangeset(storeDirectory, 2, Map.of("app.var", "second"));
+        store.refresh();
+        val version = store.getVersion();
+
+        // агент переписывает prepared.vars.xml на месте, элементы prepared.xml не изменяются
+        agent.writeVariables(storeDirectory, 1, Map.of("app.var", "rewritten"));
+        agent.republish(storeDirectory);
+        store.refresh();
+
+        Assertions.assertTrue(store.getVersion() > version);
+        Assertions.assertEquals(Set.of(1L, 2L), store.getState().getActualChangesetIds());
+        Assertions.assertEquals("rewritten", AgentEmulator.getVariables(store, 1).get("app.var"));
+        Assertions.assertEquals("second", AgentEmulator.getVariables(store, 2).get("app.var"));
+    }
+
+    @Test
+    void testParallelLoadProducesSameVersions() {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("parallel-test").withStoreLoadParallelism(4);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> settings.withStoreLoadParallelism(0));
+        val storeDirectory = agent.publishApplication(settings, List.of("app.var"), Map.of());
+        val store = agent.buildStore(settings);
+
+        for (long id = 1; id <= 20; ++id) {
+            if (id == 5)
+                agent.writeBrokenChangeset(storeDirectory, id);
+            else
+                agent.writeChangeset(storeDirectory, id, Map.of("app.var", "value" + id));
+        }
+        store.refresh();
+
+        Assertions.assertEquals(19, store.getState().getActualChangesetIds().size());
+        Assertions.assertFalse(store.getState().getActualChangesetIds().contains(5L));
+        for (long id = 1; id <= 20; ++id) {
+            if (id != 5)
+                Assertions.assertEquals("value" + id, AgentEmulator.getVariables(store, id).get("app.var"));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package sharedconfig.core;
+
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ConfigurationStoreLazyLoadingTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testOlderChangesetsAreLoadedOnDemand() {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("lazy-test").withLazyVersionLoading(true);
+        val storeDirectory = agent.publishApplication(settings, List.of("app.var"), Map.of());
+        val store = agent.buildStore(settings);
+
+        agent.writeChangeset(storeDirectory, 3, Map.of("app.var", "third"));
+        store.refresh();
+        Assertions.assertTrue(store.getState().getVersions().get(3L).isPreloaded());
+
+        // старые changeset'ы не разбираются при обновлении, поэтому некорректный файл не мешает их появлению в списке
+        agent.writeChangeset(storeDirectory, 2, Map.of("app.var", "second"));
+        agent.writeBrokenChangeset(storeDirectory, 1);
+        store.refresh();
+        Assertions.assertEquals(Set.of(1L, 2L, 3L), store.getState().getActualChangesetIds());
+        Assertions.assertFalse(store.getState().getVersions().get(1L).isPreloaded());
+        Assertions.assertFalse(store.getState().getVersions().get(2L).isPreloaded());
+
+        Assertions.assertEquals("third", AgentEmulator.getVariables(store, 3).get("app.var"));
+        Assertions.assertEquals("second", AgentEmulator.getVariables(store, 2).get("app.var"));
+        Assertions.assertNull(AgentEmulator.getVariables(store, 1));
+
+        // неудачная загрузка не запоминается
+        agent.writeChangeset(storeDirectory, 1, Map.of("app.var", "first"));
+        Assertions.assertEquals("first", AgentEmulator.getVariables(store, 1).get("app.var"));
+    }
+}
@@ -0,0 +1,61 @@
+package sharedconfig.core;
+
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sharedconfig.core.interfaces.ISharedConfigMetrics;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+public class ConfigurationStoreMetricsTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testRefreshStagesAreRecorded() {
+        val metrics = new InMemorySharedConfigMetrics();
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("metrics-test").withMetrics(metrics);
+        val storeDirectory = agent.publishApplication(settings, List.of("app.var", "other.var"), Map.of());
+        val store = agent.buildStore(settings);
+
+        agent.writeChangeset(storeDirectory, 1, Map.of("app.var", "first"));
+        agent.writeBrokenChangeset(storeDirectory, 2);
+        store.refresh();
+
+        Assertions.assertEquals(1, metrics.getHistogram(ISharedConfigMetrics.PREPARED_LOAD_DURATION).getCount());
+        Assertions.assertEquals(2, metrics.getHistogram(ISharedConfigMetrics.STORE_ITEM_LOAD_DURATION).getCount());
+        Assertions.assertEquals(1, metrics.getCount(ISharedConfigMetrics.STORE_ITEM_LOAD_FAILURES));
+        Assertions.assertEquals(1L, metrics.getGauge(ISharedConfigMetrics.ACTUAL_CHANGESETS));
+        Assertions.assertEquals(1L, metrics.getGauge(ISharedConfigMetrics.FAILED_CHANGESETS));
+        Assertions.assertEquals(2L, metrics.getGauge(ISharedConfigMetrics.DECLARED_VARIABLES));
+        Assertions.assertEquals(store.getVersion(), metrics.getGauge(ISharedConfigMetrics.STORE_VERSION));
+        val changeTime = metrics.getGauge(ISharedConfigMetrics.STORE_CHANGE_TIME);
+        Assertions.assertNotNull(changeTime);
+
+        // обновление без изменений не регистрирует загрузку и не меняет время изменения хранилища
+        store.refresh();
+        Assertions.assertEquals(1, metrics.getHistogram(ISharedConfigMetrics.PREPARED_LOAD_DURATION).getCount());
+        Assertions.assertEquals(changeTime, metrics.getGauge(ISharedConfigMetrics.STORE_CHANGE_TIME));
+    }
+
+    @Test
+    void testHistogramPercentiles() {
+        val metrics = new InMemorySharedConfigMetrics();
+        for (int i = 1; i <= 100; ++i) {
+            metrics.recordDuration("stage", i * 1000L);
+        }
+
+        val histogram = metrics.getHistogram("stage");
+        Assertions.assertEquals(100, histogram.getCount());
+        Assertions.assertEquals(100_000, histogram.getMax());
+        Assertions.assertEquals(50_500, histogram.getMean(), 0.001);
+        // оценка сверху не меньше точного значения и не больше чем вдвое
+        Assertions.assertTrue(histogram.getPercentile(0.5) >= 50_000 && histogram.getPercentile(0.5) < 100_000);
+        Assertions.assertEquals(100_000, histogram.getPercentile(1.0));
+        Assertions.assertNull(metrics.getHistogram("unknown"));
+    }
+}
@@ -0,0 +1,78 @@
+package sharedconfig.core;
+
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ConfigurationStoreRetentionTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testOldestChangesetsAreEvicted() {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("retention-count-test").withRetainedVersionCount(2);
+        val storeDirectory = agent.publishApplication(settings, List.of("app.var"), Map.of());
+        val store = agent.buildStore(settings);
+
+        for (long id = 1; id <= 4; ++id) {
+            agent.writeChangeset(storeDirectory, id, Map.of("app.var", "value" + id));
+        }
+        store.refresh();
+
+        Assertions.assertEquals(Set.of(3L, 4L), store.getState().getActualChangesetIds());
+        Assertions.assertNull(AgentEmulator.getVariables(store, 1));
+        Assertions.assertEquals("value3", AgentEmulator.getVariables(store, 3).get("app.var"));
+        Assertions.assertEquals("value4", AgentEmulator.getVariables(store, 4).get("app.var"));
+    }
+
+    @Test
+    void testEvictedChangesetsAreReloadedOnDemand() {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("retention-reload-test")
+                .withRetainedVersionCount(1)
+                .withReloadEvictedVersions(true);
+        val storeDirectory = agent.publishApplication(settings, List.of("app.var"), Map.of());
+        val store = agent.buildStore(settings);
+
+        agent.writeChangeset(storeDirectory, 1, Map.of("app.var", "first"));
+        agent.writeChangeset(storeDirectory, 2, Map.of("app.var", "second"));
+        store.refresh();
+
+        Assertions.assertEquals(Set.of(1L, 2L), store.getState().getActualChangesetIds());
+        Assertions.assertTrue(store.getState().getVersions().get(1L).isEvicted());
+        Assertions.assertEquals("first", AgentEmulator.getVariables(store, 1).get("app.var"));
+        Assertions.assertEquals("second", AgentEmulator.getVariables(store, 2).get("app.var"));
+    }
+
+    @Test
+    void testRemovedChangesetsAreDroppedAfterGracePeriod() throws Exception {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("retention-deprecated-test")
+                .withDeprecatedVersionRetention(Duration.ofMillis(200));
+        val storeDirectory = agent.publishApplication(settings, List.of("app.var"), Map.of());
+        val store = agent.buildStore(settings);
+
+        agent.writeChangeset(storeDirectory, 1, Map.of("app.var", "first"));
+        agent.writeChangeset(storeDirectory, 2, Map.of("app.var", "second"));
+        store.refresh();
+
+        agent.setChangesetStatus(storeDirectory, 1, "Removed");
+        store.refresh();
+        Assertions.assertEquals(Set.of(2L), store.getState().getActualChangesetIds());
+        Assertions.assertEquals("first", AgentEmulator.getVariables(store, 1).get("app.var"));
+
+        // срок хранения истекает и без изменений prepared.xml
+        Thread.sleep(250);
+        store.refresh();
+        Assertions.assertNull(AgentEmulator.getVariables(store, 1));
+        Assertions.assertEquals("second", AgentEmulator.getVariables(store, 2).get("app.var"));
+    }
+}
@@ -0,0 +1,82 @@
+package sharedconfig.core;
+
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sharedconfig.core.model.appinv.declarations.ApplicationDeclaration;
+import sharedconfig.core.model.appinv.declarations.ApplicationInvDeclaration;
+import sharedconfig.core.model.appinv.declarations.VariableDeclaration;
+import sharedconfig.utils.FileFingerprint;
+import sharedconfig.utils.NameHashMap;
+import sharedconfig.utils.collections.StringPool;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class PreparedVarsCacheTest {
+    private static final String ITEM_ID = "/store/cs1";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testValuesAreReadBackForSameFile() throws Exception {
+        val cache = PreparedVarsCache.create(tempDir, inventory("a", "b", "c"));
+        val fingerprint = fingerprint("<variables/>");
+        val values = new String[] { "value", null, "значение" };
+
+        cache.write(ITEM_ID, fingerprint, values);
+        Assertions.assertArrayEquals(values, cache.tryRead(ITEM_ID, fingerprint, new StringPool()));
+        Assertions.assertNull(cache.tryRead("/store/cs2", fingerprint, new StringPool()));
+    }
+
+    @Test
+    void testStaleEntryIsIgnored() throws Exception {
+        val cache = PreparedVarsCache.create(tempDir, inventory("a"));
+        cache.write(ITEM_ID, fingerprint("<variables/>"), new String[] { "value" });
+
+        Assertions.assertNull(cache.tryRead(ITEM_ID, fingerprint("<variables />"), new StringPool()));
+    }
+
+    @Test
+    void testEntryOfAnotherInventoryIsIgnored() throws Exception {
+        val fingerprint = fingerprint("<variables/>");
+        PreparedVarsCache.create(tempDir, inventory("a", "b")).write(ITEM_ID, fingerprint, new String[] { "a", "b" });
+
+        Assertions.assertNull(PreparedVarsCache.create(tempDir, inventory("a", "c")).tryRead(ITEM_ID, fingerprint, new StringPool()));
+    }
+
+    @Test
+    void testCorruptEntryIsIgnored() throws Exception {
+        val cache = PreparedVarsCache.create(tempDir, inventory("a"));
+        val fingerprint = fingerprint("<variables/>");
+        cache.write(ITEM_ID, fingerprint, new String[] { "value" });
+
+        try (val entries = Files.list(tempDir.resolve(".vars-cache"))) {
+            val entry = entries.findFirst().orElseThrow();
+            val bytes = Files.readAllBytes(entry);
+            bytes[bytes.length - 6] ^= 1;
+            Files.write(entry, bytes);
+        }
+        Assertions.assertNull(cache.tryRead(ITEM_ID, fingerprint, new StringPool()));
+    }
+
+    private FileFingerprint fingerprint(String content) throws Exception {
+        val file = tempDir.resolve("prepared.vars.xml");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return FileFingerprint.take(file.toFile(), null, true);
+    }
+
+    private static ApplicationInvDeclaration inventory(String... variables) {
+        val application = new ApplicationDeclaration("app", "1.0.0");
+        val allVariables = new NameHashMap<VariableDeclaration>();
+        for (val variable : variables) {
+            val declaration = new VariableDeclaration(variable, variable + "-hash", null, null);
+            application.getVariables().put(variable, declaration);
+            allVariables.put(declaration.getId(), declaration);
+        }
+        return new ApplicationInvDeclaration(application, application.getAlerts(), application.getBlocks(), allVariables);
+    }
+}
@@ -0,0 +1,48 @@
+package sharedconfig.core;
+
+import lombok.val;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+public class PreparedVarsParserTest {
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @EnumSource(PreparedVarsParser.class)
+    void testParsersProduceSameValues(PreparedVarsParser parser) {
+        val agent = new AgentEmulator(tempDir);
+        val settings = agent.createSettings("parser-test-" + parser.name().toLowerCase())
+                .withPreparedVarsParser(parser);
+        val storeDirectory = agent.publishApplication(settings, List.of("plain", "escaped", "cdata", "mixed", "empty"),
+                Map.of("block", List.of("block.var")));
+        val store = agent.buildStore(settings);
+
+        agent.writeChangeset(storeDirectory, 1, Map.of(
+                "plain", "value",
+                "escaped", "a &amp; b &lt; c",
+                "cdata", "<![CDATA[x < y]]>",
+                "mixed", "head <![CDATA[<body>]]> tail",
+                "empty", "",
+                "block.var", "block value",
+                "undeclared", "skipped"));
+        store.refresh();
+
+        val variables = AgentEmulator.getVariables(store, 1);
+        Assertions.assertEquals("value", variables.get("plain"));
+        Assertions.assertEquals("a & b < c", variables.get("escaped"));
+        Assertions.assertEquals("x < y", variables.get("cdata"));
+        Assertions.assertEquals("head <body> tail", variables.get("mixed"));
+        Assertions.assertEquals("", variables.get("empty"));
+        Assertions.assertEquals("block value", variables.get("block.var"));
+        Assertions.assertFalse(variables.containsKey("undeclared"));
+
+        Assertions.assertEquals(Map.of("block.var", "block value"), AgentEmulator.getLastBlockVariables(store, "block"));
+    }
+}
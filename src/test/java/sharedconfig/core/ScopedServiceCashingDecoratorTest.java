@@ -0,0 +1,222 @@
+package sharedconfig.core;
+
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import sharedconfig.core.interfaces.IObservableConfigurationService;
+import sharedconfig.core.interfaces.IObservableSharedConfigMonitor;
+import sharedconfig.core.interfaces.ISharedConfigMetrics;
+import sharedconfig.core.interfaces.ISharedConfigSubscription;
+import sharedconfig.utils.tuples.NameVersionTuple;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+public class ScopedServiceCashingDecoratorTest {
+    private static final int THREADS = 8;
+
+    @Test
+    void testEachValueIsBuiltOncePerStoreVersion() throws Exception {
+        val service = new CountingService();
+        val decorator = new ScopedServiceCashingDecorator<>(service);
+        val pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (long storeVersion = 1; storeVersion <= 20; ++storeVersion) {
+                service.storeVersion.set(storeVersion);
+                val start = new CountDownLatch(1);
+                val futures = new ArrayList<Future<?>>();
+                for (int t = 0; t < THREADS; ++t) {
+                    futures.add(pool.submit(() -> {
+                        start.await();
+                        for (int i = 0; i < 1000; ++i) {
+                            decorator.getLastVersion();
+                            decorator.getVersion((long) (i % 5)).orElseThrow();
+                        }
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (val future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+
+                Assertions.assertEquals(1, service.lastVersionBuilds.get(storeVersion).get(), "getLastVersion builds for store version " + storeVersion);
+                for (long versionId = 0; versionId < 5; ++versionId) {
+                    Assertions.assertEquals(1, service.versionBuilds.get(storeVersion + ":" + versionId).get(), "getVersion builds for store version " + storeVersion);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testReadersNeverSeeValueOlderThanObservedStoreVersion() throws Exception {
+        val service = new CountingService();
+        val decorator = new ScopedServiceCashingDecorator<>(service);
+        val stop = new AtomicBoolean(false);
+        val pool = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            val futures = new ArrayList<Future<?>>();
+            futures.add(pool.submit(() -> {
+                while (!stop.get()) {
+                    service.storeVersion.incrementAndGet();
+                    Thread.yield();
+                }
+                return null;
+            }));
+            for (int t = 0; t < THREADS; ++t) {
+                futures.add(pool.submit(() -> {
+                    while (!stop.get()) {
+                        val observedVersion = service.storeVersion.get();
+                        val lastVersion = Long.parseLong(decorator.getLastVersion());
+                        Assertions.assertTrue(lastVersion >= observedVersion, "stale value " + lastVersion + " < " + observedVersion);
+
+                        val version = decorator.getVersion(7L).orElseThrow();
+                        Assertions.assertTrue(version.endsWith(":7"));
+                    }
+                    return null;
+                }));
+            }
+
+            Thread.sleep(1000);
+            stop.set(true);
+            for (val future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testFailedBuildIsNotCached() throws Exception {
+        val service = new CountingService();
+        val decorator = new ScopedServiceCashingDecorator<>(service);
+        service.storeVersion.set(1);
+
+        service.fail.set(true);
+        Assertions.assertThrows(IllegalStateException.class, decorator::getLastVersion);
+        Assertions.assertThrows(IllegalStateException.class, () -> decorator.getVersion(1L));
+
+        service.fail.set(false);
+        Assertions.assertEquals("1", decorator.getLastVersion());
+        Assertions.assertEquals("1:1", decorator.getVersion(1L).orElseThrow());
+    }
+
+    @Test
+    void testStaleReaderDoesNotReplaceNewerGeneration() throws Exception {
+        val service = new CountingService();
+        val decorator = new ScopedServiceCashingDecorator<>(service);
+        service.storeVersion.set(2);
+        Assertions.assertEquals("2", decorator.getLastVersion());
+
+        // поток, прочитавший предыдущую версию хранилища, строит значение без кэширования
+        service.storeVersion.set(1);
+        Assertions.assertEquals("1", decorator.getLastVersion());
+        Assertions.assertEquals("1", decorator.getLastVersion());
+        Assertions.assertEquals(2, service.lastVersionBuilds.get(1L).get());
+
+        service.storeVersion.set(2);
+        Assertions.assertEquals("2", decorator.getLastVersion());
+        Assertions.assertEquals(1, service.lastVersionBuilds.get(2L).get());
+    }
+
+    @Test
+    void testReplacedStoreStartsNewGeneration() throws Exception {
+        val service = new CountingService();
+        val decorator = new ScopedServiceCashingDecorator<>(service);
+        service.storeVersion.set(3);
+        Assertions.assertEquals("3", decorator.getLastVersion());
+
+        // новое хранилище начинает нумерацию версий заново, его значения кэшируются с первой версии
+        service.store = new Object();
+        service.storeVersion.set(1);
+        Assertions.assertEquals("1", decorator.getLastVersion());
+        Assertions.assertEquals("1", decorator.getLastVersion());
+        Assertions.assertEquals(1, service.lastVersionBuilds.get(1L).get());
+
+        // та же версия нового хранилища не получает значение, построенное по старому хранилищу
+        service.storeVersion.set(3);
+        Assertions.assertEquals("3", decorator.getLastVersion());
+        Assertions.assertEquals(2, service.lastVersionBuilds.get(3L).get());
+    }
+
+    @Test
+    void testCacheHitsAreCounted() throws Exception {
+        val service = new CountingService();
+        val metrics = new InMemorySharedConfigMetrics();
+        val decorator = new ScopedServiceCashingDecorator<>(service, metrics);
+        service.storeVersion.set(1);
+
+        for (int i = 0; i < 3; ++i) {
+            Assertions.assertEquals("1", decorator.getLastVersion());
+        }
+        Assertions.assertEquals(1, metrics.getCount(ISharedConfigMetrics.SCOPE_CACHE_MISSES));
+        Assertions.assertEquals(2, metrics.getCount(ISharedConfigMetrics.SCOPE_CACHE_HITS));
+    }
+
+    /**
+     * Сервис, значения которого содержат версию хранилища на момент построения
+     */
+    private static class CountingService implements IObservableConfigurationService<String>, IStoreBoundService {
+        volatile Object store = new Object();
+        final AtomicLong storeVersion = new AtomicLong(0);
+        final AtomicBoolean fail = new AtomicBoolean(false);
+        final ConcurrentHashMap<Long, AtomicLong> lastVersionBuilds = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, AtomicLong> versionBuilds = new ConcurrentHashMap<>();
+
+        @Override
+        public @NotNull NameVersionTuple getScopeId() {
+            return new NameVersionTuple("test", "1.0.0");
+        }
+
+        @Override
+        public @NotNull SortedSet<Long> getVersionIds() {
+            return Collections.emptySortedSet();
+        }
+
+        @Override
+        public @Nullable Object getStoreIdentity() {
+            return store;
+        }
+
+        @Override
+        public @Nullable Long getLatestVersionId() {
+            return storeVersion.get();
+        }
+
+        @Override
+        public @NotNull IObservableSharedConfigMonitor<String> getObservedVersion() {
+            return new SharedConfigMonitor<>(this);
+        }
+
+        @Override
+        public @NotNull ISharedConfigSubscription onChange(@NotNull Consumer<String> listener) {
+            return () -> {};
+        }
+
+        @Override
+        public String getLastVersion() {
+            if (fail.get())
+                throw new IllegalStateException("build failed");
+            val version = storeVersion.get();
+            lastVersionBuilds.computeIfAbsent(version, (__) -> new AtomicLong()).incrementAndGet();
+            return Long.toString(version);
+        }
+
+        @Override
+        public Optional<String> getVersion(@NotNull Long versionId) {
+            if (fail.get())
+                throw new IllegalStateException("build failed");
+            val version = storeVersion.get();
+            versionBuilds.computeIfAbsent(version + ":" + versionId, (__) -> new AtomicLong()).incrementAndGet();
+            return Optional.of(version + ":" + versionId);
+        }
+    }
+}